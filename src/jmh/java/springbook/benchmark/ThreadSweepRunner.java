@@ -0,0 +1,19 @@
+package springbook.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class ThreadSweepRunner {
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : "SqlRegistry";
+        for (int threads : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
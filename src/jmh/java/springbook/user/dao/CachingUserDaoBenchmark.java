@@ -0,0 +1,63 @@
+package springbook.user.dao;
+
+import org.openjdk.jmh.annotations.*;
+import springbook.user.domain.Level;
+import springbook.user.domain.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 스레드가 동시에 CachingUserDao.get() 으로 캐시에 든 사용자를 읽을 때의 처리량.
+ * 캐시 적중은 락을 잡지 않으므로 스레드 수를 늘리면 처리량도 함께 늘어야 한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CachingUserDaoBenchmark {
+    static final int USER_COUNT = 1000;
+
+    CachingUserDao userDao;
+    String[] ids;
+
+    @Setup
+    public void setUp() {
+        userDao = new CachingUserDao();
+        userDao.setUserDao(new FixedUserDao());
+
+        ids = new String[USER_COUNT];
+        for (int i = 0; i < USER_COUNT; i++) {
+            ids[i] = "user" + i;
+            userDao.get(ids[i]);
+        }
+    }
+
+    @Benchmark
+    public User cachedGet() {
+        return userDao.get(ids[ThreadLocalRandom.current().nextInt(USER_COUNT)]);
+    }
+
+    static class FixedUserDao implements UserDao {
+        @Override
+        public User get(String id) {
+            return new User(id, "박성철", "springno1", Level.BASIC, 1, 0, id + "@test.com");
+        }
+
+        @Override public void add(User user) { throw new UnsupportedOperationException(); }
+        @Override public void addAll(Collection<User> users) { throw new UnsupportedOperationException(); }
+        @Override public List<User> getAll() { throw new UnsupportedOperationException(); }
+        @Override public List<User> getAllAfter(String lastId, int limit) { throw new UnsupportedOperationException(); }
+        @Override public void deleteAll() { throw new UnsupportedOperationException(); }
+        @Override public int getCount() { throw new UnsupportedOperationException(); }
+        @Override public void createTable() { throw new UnsupportedOperationException(); }
+        @Override public void update(User user) { throw new UnsupportedOperationException(); }
+        @Override public void updateAll(Collection<User> users) { throw new UnsupportedOperationException(); }
+        @Override public List<User> upgradeLevels(Level level, Integer minLogin, Integer minRecommend) { throw new UnsupportedOperationException(); }
+    }
+}
@@ -0,0 +1,128 @@
+package springbook.user.dao;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import springbook.user.domain.Level;
+import springbook.user.domain.User;
+import springbook.user.sqlservice.DefaultSqlService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.H2;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UserDaoBatchBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Users {
+        @Param({"100", "1000"})
+        int userCount;
+
+        @Param({"50", "500"})
+        int batchSize;
+
+        EmbeddedDatabase db;
+        UserDaoJdbc userDao;
+        List<User> users;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Trial)
+        public void setUp() {
+            db = new EmbeddedDatabaseBuilder()
+                    .generateUniqueName(true)
+                    .setType(H2)
+                    .build();
+
+            DefaultSqlService sqlService = new DefaultSqlService();
+            sqlService.loadSql();
+
+            userDao = new UserDaoJdbc();
+            userDao.setDataSource(db);
+            userDao.setSqlService(sqlService);
+            userDao.setBatchSize(batchSize);
+            userDao.createTable();
+
+            users = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                users.add(new User("user" + i, "name" + i, "password" + i, Level.BASIC, i, 0, "user" + i + "@ksug.org"));
+            }
+        }
+
+        @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+        public void tearDown() {
+            db.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmptyTable extends Users {
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void clear() {
+            userDao.deleteAll();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FilledTable extends Users {
+        @Setup(org.openjdk.jmh.annotations.Level.Trial)
+        public void fill() {
+            userDao.addAll(users);
+        }
+    }
+
+    // 서비스 코드처럼 트랜잭션 안에서 한 건씩 쓰되, writeBehind 면 커밋할 때 배치로 나간다
+    @State(Scope.Benchmark)
+    public static class TransactionalTable extends FilledTable {
+        @Param({"false", "true"})
+        boolean writeBehind;
+
+        TransactionTemplate transactionTemplate;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Trial)
+        public void setUpTransaction() {
+            userDao.setWriteBehind(writeBehind);
+            transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(db));
+        }
+    }
+
+    @Benchmark
+    public void addOneByOne(EmptyTable table) {
+        for (User user : table.users) {
+            table.userDao.add(user);
+        }
+    }
+
+    @Benchmark
+    public void addAll(EmptyTable table) {
+        table.userDao.addAll(table.users);
+    }
+
+    @Benchmark
+    public void updateOneByOne(FilledTable table) {
+        for (User user : table.users) {
+            table.userDao.update(user);
+        }
+    }
+
+    @Benchmark
+    public void updateAll(FilledTable table) {
+        table.userDao.updateAll(table.users);
+    }
+
+    @Benchmark
+    public void updateOneByOneInTransaction(TransactionalTable table) {
+        table.transactionTemplate.executeWithoutResult(status -> {
+            for (User user : table.users) {
+                table.userDao.update(user);
+            }
+        });
+    }
+}
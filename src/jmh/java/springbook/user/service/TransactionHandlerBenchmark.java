@@ -0,0 +1,123 @@
+package springbook.user.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 메소드 디스패치를 캐시하는 TransactionHandler 와, 호출마다 이름을 비교하고 리플렉션으로 호출하던 이전 핸들러를 비교한다.
+ * 트랜잭션 매니저는 아무것도 하지 않으므로 프록시 자체의 비용만 잰다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionHandlerBenchmark {
+    @Param({"legacy", "cached"})
+    String handler;
+
+    Counter counter;
+
+    @Setup
+    public void setUp() {
+        InvocationHandler invocationHandler;
+        if ("legacy".equals(handler)) {
+            LegacyTransactionHandler legacy = new LegacyTransactionHandler();
+            legacy.target = new SimpleCounter();
+            legacy.transactionManager = new NoOpTransactionManager();
+            legacy.pattern = "add";
+            invocationHandler = legacy;
+        } else {
+            TransactionHandler cached = new TransactionHandler();
+            cached.setTarget(new SimpleCounter());
+            cached.setTransactionManager(new NoOpTransactionManager());
+            cached.setPattern("add");
+            invocationHandler = cached;
+        }
+        counter = (Counter) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Counter.class}, invocationHandler);
+    }
+
+    @Benchmark
+    public int transactional() {
+        return counter.add(1);
+    }
+
+    @Benchmark
+    public int nonTransactional() {
+        return counter.get();
+    }
+
+    public interface Counter {
+        int add(int delta);
+        int get();
+    }
+
+    static class SimpleCounter implements Counter {
+        int value;
+
+        @Override
+        public int add(int delta) {
+            return value += delta;
+        }
+
+        @Override
+        public int get() {
+            return value;
+        }
+    }
+
+    static class NoOpTransactionManager implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+
+    // 디스패치 캐시를 넣기 전의 TransactionHandler
+    static class LegacyTransactionHandler implements InvocationHandler {
+        Object target;
+        PlatformTransactionManager transactionManager;
+        String pattern;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith(pattern)) {
+                return invokeInTransaction(method, args);
+            } else {
+                return method.invoke(target, args);
+            }
+        }
+
+        private Object invokeInTransaction(Method method, Object[] args) throws Throwable {
+            TransactionStatus status = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+
+            try {
+                Object ret = method.invoke(target, args);
+                this.transactionManager.commit(status);
+                return ret;
+            } catch (InvocationTargetException e) {
+                this.transactionManager.rollback(status);
+                throw e.getTargetException();
+            }
+        }
+    }
+}
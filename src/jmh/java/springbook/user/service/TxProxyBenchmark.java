@@ -0,0 +1,62 @@
+package springbook.user.service;
+
+import org.openjdk.jmh.annotations.*;
+import springbook.user.metrics.TransactionMetrics;
+import springbook.user.service.TransactionHandlerBenchmark.Counter;
+import springbook.user.service.TransactionHandlerBenchmark.NoOpTransactionManager;
+import springbook.user.service.TransactionHandlerBenchmark.SimpleCounter;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TxProxyFactoryBean 이 만드는 JDK 다이내믹 프록시와 바이트코드로 만든 프록시의 호출 비용을 비교한다.
+ * direct 는 프록시 없이 타깃을 부르는 기준값이다. metrics 는 트랜잭션 지표를 기록할 때 더해지는 비용을 본다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TxProxyBenchmark {
+    @Param({"direct", "jdkProxy", "generated"})
+    String proxy;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    Counter counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("direct".equals(proxy)) {
+            counter = new SimpleCounter();
+            return;
+        }
+
+        Properties attributes = new Properties();
+        attributes.setProperty("add*", "PROPAGATION_REQUIRED");
+
+        TxProxyFactoryBean factoryBean = new TxProxyFactoryBean();
+        factoryBean.setTarget(new SimpleCounter());
+        factoryBean.setTransactionManager(new NoOpTransactionManager());
+        factoryBean.setServiceInterface(Counter.class);
+        factoryBean.setTransactionAttributes(attributes);
+        factoryBean.setGenerateProxyClass("generated".equals(proxy));
+        if (metrics) {
+            factoryBean.setTransactionMetrics(new TransactionMetrics());
+        }
+        counter = (Counter) factoryBean.getObject();
+    }
+
+    @Benchmark
+    public int transactional() {
+        return counter.add(1);
+    }
+
+    @Benchmark
+    public int nonTransactional() {
+        return counter.get();
+    }
+}
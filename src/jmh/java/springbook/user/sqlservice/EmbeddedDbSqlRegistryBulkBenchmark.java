@@ -0,0 +1,72 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+import springbook.user.sqlservice.updatable.EmbeddedDbSqlRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sqlmap 전체를 한 건씩 등록/수정할 때와 배치로 등록/수정할 때를 비교한다.
+ * 등록은 매번 빈 DB 에서 시작해야 하므로 호출마다 새 DB 를 만든다.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Thread)
+public class EmbeddedDbSqlRegistryBulkBenchmark {
+    @Param({"1000", "10000"})
+    int keyCount;
+
+    SqlRegistryFixtures fixtures;
+    EmbeddedDbSqlRegistry sqlRegistry;
+    Map<String, String> sqlmap;
+    Map<String, String> modified;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        fixtures = new SqlRegistryFixtures();
+        sqlRegistry = (EmbeddedDbSqlRegistry) fixtures.create("embeddedDb", 0);
+
+        sqlmap = new LinkedHashMap<>();
+        modified = new LinkedHashMap<>();
+        for (int i = 0; i < keyCount; i++) {
+            sqlmap.put(SqlRegistryFixtures.keyOf(i), "select * from users where id = " + i);
+            modified.put(SqlRegistryFixtures.keyOf(i), "select * from users where id = " + (i + 1));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        fixtures.shutdown();
+    }
+
+    @Benchmark
+    public void registerOneByOne() {
+        for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+            sqlRegistry.registerSql(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void registerBulk() {
+        sqlRegistry.registerSql(sqlmap);
+    }
+
+    @Benchmark
+    public void registerAndUpdateOneByOne() {
+        sqlRegistry.registerSql(sqlmap);
+        for (Map.Entry<String, String> entry : modified.entrySet()) {
+            sqlRegistry.updateSql(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void registerAndUpdateBulk() {
+        sqlRegistry.registerSql(sqlmap);
+        sqlRegistry.updateSql(modified);
+    }
+}
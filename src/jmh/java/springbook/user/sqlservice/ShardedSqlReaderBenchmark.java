@@ -0,0 +1,67 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedSqlReaderBenchmark {
+    @Param({"16"})
+    int shardCount;
+
+    @Param({"5000"})
+    int sqlPerShard;
+
+    @Param({"1", "4", "0"})
+    int parallelism;
+
+    Resource[] shards;
+    ForkJoinPool forkJoinPool;
+
+    @Setup
+    public void setUp() throws IOException {
+        shards = new Resource[shardCount];
+        for (int s = 0; s < shardCount; s++) {
+            File file = File.createTempFile("sqlmap-shard" + s, ".xml");
+            try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+                writer.println("<sqlmap xmlns=\"http://www.epril.com/sqlmap\">");
+                for (int i = 0; i < sqlPerShard; i++) {
+                    writer.println("    <sql key=\"SHARD" + s + "_KEY" + i + "\">select * from users where id = ? and login &gt; " + i + "</sql>");
+                }
+                writer.println("</sqlmap>");
+            }
+            shards[s] = new FileSystemResource(file);
+        }
+        // 0 이면 코어 수만큼
+        forkJoinPool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        forkJoinPool.shutdown();
+        for (Resource shard : shards) {
+            shard.getFile().delete();
+        }
+    }
+
+    @Benchmark
+    public SqlRegistry read() {
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setForkJoinPool(forkJoinPool);
+        sqlReader.setSqlmaps(shards);
+        HashMapSqlRegistry sqlRegistry = new HashMapSqlRegistry();
+        sqlReader.read(sqlRegistry);
+        return sqlRegistry;
+    }
+}
@@ -0,0 +1,40 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+import springbook.user.sqlservice.updatable.CachingUpdatableSqlRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlHandleBenchmark {
+    BaseSqlService sqlService;
+    SqlHandle handle;
+
+    @Setup
+    public void setUp() {
+        CachingUpdatableSqlRegistry sqlRegistry = new CachingUpdatableSqlRegistry();
+        sqlRegistry.setSqlRegistry(new ConcurrentHashMapRegistry());
+
+        sqlService = new BaseSqlService();
+        sqlService.setSqlReader(new JaxbXmlSqlReader());
+        sqlService.setSqlRegistry(sqlRegistry);
+        sqlService.loadSql();
+
+        handle = sqlService.getSqlHandle("userGet");
+    }
+
+    @Benchmark
+    public String stringLookup() {
+        return sqlService.getSql("userGet");
+    }
+
+    @Benchmark
+    public String handle() {
+        return handle.getSql();
+    }
+}
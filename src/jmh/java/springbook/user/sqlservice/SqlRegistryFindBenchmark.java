@@ -0,0 +1,52 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlRegistryFindBenchmark {
+    @Param({"hashMap", "concurrentHashMap", "copyOnWrite", "xmlSqlService", "embeddedDb", "cachingEmbeddedDb"})
+    String registry;
+
+    @Param({"10", "1000", "10000"})
+    int keyCount;
+
+    SqlRegistryFixtures fixtures = new SqlRegistryFixtures();
+    SqlRegistry sqlRegistry;
+
+    @Setup
+    public void setUp() {
+        sqlRegistry = fixtures.create(registry, keyCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixtures.shutdown();
+    }
+
+    @Benchmark
+    public String findSqlHit() {
+        return sqlRegistry.findSql(SqlRegistryFixtures.keyOf(ThreadLocalRandom.current().nextInt(keyCount)));
+    }
+
+    @Benchmark
+    public String findSqlMiss() {
+        try {
+            return sqlRegistry.findSql("MISSING" + ThreadLocalRandom.current().nextInt(keyCount));
+        } catch (SqlNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public String lookupSqlMiss() {
+        return sqlRegistry.lookupSql("MISSING" + ThreadLocalRandom.current().nextInt(keyCount)).orElse(null);
+    }
+}
@@ -0,0 +1,64 @@
+package springbook.user.sqlservice;
+
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import springbook.user.sqlservice.updatable.CachingUpdatableSqlRegistry;
+import springbook.user.sqlservice.updatable.EmbeddedDbSqlRegistry;
+
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.H2;
+
+class SqlRegistryFixtures {
+    private EmbeddedDatabase db;
+
+    SqlRegistry create(String registry, int keyCount) {
+        SqlRegistry sqlRegistry = newRegistry(registry);
+        for (int i = 0; i < keyCount; i++) {
+            sqlRegistry.registerSql(keyOf(i), "select * from users where id = " + i);
+        }
+        return sqlRegistry;
+    }
+
+    void shutdown() {
+        if (db != null) {
+            db.shutdown();
+            db = null;
+        }
+    }
+
+    static String keyOf(int index) {
+        return "KEY" + index;
+    }
+
+    private SqlRegistry newRegistry(String registry) {
+        switch (registry) {
+            case "hashMap":
+                return new HashMapSqlRegistry();
+            case "concurrentHashMap":
+                return new ConcurrentHashMapRegistry();
+            case "copyOnWrite":
+                return new CopyOnWriteSqlRegistry();
+            case "xmlSqlService":
+                return new XmlSqlService();
+            case "embeddedDb":
+                return embeddedDbSqlRegistry();
+            case "cachingEmbeddedDb":
+                CachingUpdatableSqlRegistry cachingSqlRegistry = new CachingUpdatableSqlRegistry();
+                cachingSqlRegistry.setSqlRegistry(embeddedDbSqlRegistry());
+                return cachingSqlRegistry;
+            default:
+                throw new IllegalArgumentException("알 수 없는 레지스트리 : " + registry);
+        }
+    }
+
+    private EmbeddedDbSqlRegistry embeddedDbSqlRegistry() {
+        db = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(H2)
+                .addScript("/schema.sql")
+                .build();
+
+        EmbeddedDbSqlRegistry sqlRegistry = new EmbeddedDbSqlRegistry();
+        sqlRegistry.setDataSource(db);
+        return sqlRegistry;
+    }
+}
@@ -0,0 +1,109 @@
+package springbook.user.sqlservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 같은 sqlmap 을 여러 레지스트리에 넣고 GC 후 늘어난 힙 크기를 비교한다.
+ * 테넌트마다 같은 SQL 을 따로 읽어 들인 상황을 흉내 내려고, 같은 내용의 SQL 도 매번 새 String 으로 만든다.
+ * <p>사용법: {@code gradle sqlRegistryFootprint -PfootprintArgs="<키 수> <서로 다른 SQL 수>"}
+ */
+public class SqlRegistryFootprintReport {
+    private static final int DEFAULT_KEY_COUNT = 200_000;
+    private static final int DEFAULT_DISTINCT_SQL_COUNT = 2_000;
+    private static final int OVERRIDES_PER_TENANT = 5;
+
+    public static void main(String[] args) {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KEY_COUNT;
+        int distinctSqlCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DISTINCT_SQL_COUNT;
+
+        System.out.printf("keys=%d, distinct sql=%d%n", keyCount, distinctSqlCount);
+        System.out.printf("%-32s %12s %10s%n", "registry", "heap(KB)", "bytes/key");
+
+        report("hashMap", HashMapSqlRegistry::new, keyCount, distinctSqlCount);
+        report("hashMap + SqlTextPool", () -> {
+            HashMapSqlRegistry sqlRegistry = new HashMapSqlRegistry();
+            sqlRegistry.setSqlTextPool(new SqlTextPool());
+            return sqlRegistry;
+        }, keyCount, distinctSqlCount);
+        report("concurrentHashMap", ConcurrentHashMapRegistry::new, keyCount, distinctSqlCount);
+        report("concurrentHashMap + SqlTextPool", () -> {
+            ConcurrentHashMapRegistry sqlRegistry = new ConcurrentHashMapRegistry();
+            sqlRegistry.setSqlTextPool(new SqlTextPool());
+            return sqlRegistry;
+        }, keyCount, distinctSqlCount);
+        report("xmlSqlService", XmlSqlService::new, keyCount, distinctSqlCount);
+        report("packed", PackedSqlRegistry::new, keyCount, distinctSqlCount);
+
+        reportTenants(keyCount / distinctSqlCount, distinctSqlCount);
+    }
+
+    /**
+     * 테넌트마다 SQL 5개만 다를 때, 테넌트별 전체 복사본과 LayeredSqlRegistry 를 비교한다.
+     */
+    private static void reportTenants(int tenantCount, int sqlCount) {
+        System.out.printf("%ntenants=%d, sql=%d, overrides per tenant=%d%n", tenantCount, sqlCount, OVERRIDES_PER_TENANT);
+        System.out.printf("%-32s %12s%n", "registry", "heap(KB)");
+
+        long before = usedHeap();
+        List<SqlRegistry> copies = new ArrayList<>();
+        for (int t = 0; t < tenantCount; t++) {
+            HashMapSqlRegistry sqlRegistry = new HashMapSqlRegistry();
+            for (int i = 0; i < sqlCount; i++) {
+                sqlRegistry.registerSql("KEY" + i, tenantSql(t, i));
+            }
+            copies.add(sqlRegistry);
+        }
+        System.out.printf("%-32s %12d%n", "hashMap per tenant", (usedHeap() - before) / 1024);
+        if (copies.get(0).findSql("KEY0") == null) throw new IllegalStateException();
+        copies = null;
+
+        before = usedHeap();
+        LayeredSqlRegistry layered = new LayeredSqlRegistry();
+        for (int i = 0; i < sqlCount; i++) {
+            layered.registerSql("KEY" + i, tenantSql(-1, i));
+        }
+        for (int t = 0; t < tenantCount; t++) {
+            for (int i = 0; i < OVERRIDES_PER_TENANT; i++) {
+                layered.registerSql("TENANT" + t, "KEY" + i, tenantSql(t, i));
+            }
+        }
+        System.out.printf("%-32s %12d%n", "layered", (usedHeap() - before) / 1024);
+        if (layered.findSql("KEY0") == null) throw new IllegalStateException();
+    }
+
+    private static String tenantSql(int tenant, int index) {
+        if (tenant >= 0 && index < OVERRIDES_PER_TENANT) {
+            return "select * from users_" + tenant + " where id = ? and login > " + index;
+        }
+        return new StringBuilder("select * from users where id = ? and login > ").append(index).toString();
+    }
+
+    private static void report(String name, Supplier<SqlRegistry> factory, int keyCount, int distinctSqlCount) {
+        long before = usedHeap();
+        SqlRegistry sqlRegistry = factory.get();
+        for (int i = 0; i < keyCount; i++) {
+            sqlRegistry.registerSql("TENANT" + (i / distinctSqlCount) + "_KEY" + (i % distinctSqlCount),
+                    new StringBuilder("select * from users where id = ? and login > ").append(i % distinctSqlCount).toString());
+        }
+        long used = usedHeap() - before;
+
+        System.out.printf("%-32s %12d %10d%n", name, used / 1024, used / keyCount);
+        // 측정이 끝날 때까지 레지스트리가 수거되지 않도록 잡아 둔다
+        if (sqlRegistry.findSql("TENANT0_KEY0") == null) throw new IllegalStateException();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
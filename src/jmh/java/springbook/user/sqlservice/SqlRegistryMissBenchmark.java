@@ -0,0 +1,74 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 없는 키를 찾을 때 예외로 알리는 findSql 과 빈 Optional 을 돌려주는 lookupSql 의 비용을 비교한다.
+ * fallback 은 테넌트 오버라이드 레지스트리에서 못 찾으면 기본 레지스트리로 넘어가는, 미스가 흔한 조회를 흉내 낸다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlRegistryMissBenchmark {
+    @Param({"hashMap", "concurrentHashMap", "embeddedDb"})
+    String registry;
+
+    @Param({"1000"})
+    int keyCount;
+
+    SqlRegistryFixtures fixtures = new SqlRegistryFixtures();
+    SqlRegistry overrides;
+    SqlRegistry defaults;
+
+    @Setup
+    public void setUp() {
+        // 오버라이드는 비어 있으므로 모든 조회가 한 번씩 미스를 겪는다
+        overrides = fixtures.create(registry, 0);
+        defaults = new SqlRegistryFixtures().create("hashMap", keyCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixtures.shutdown();
+    }
+
+    @Benchmark
+    public String missByException() {
+        try {
+            return overrides.findSql(randomKey());
+        } catch (SqlNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public String missByOptional() {
+        return overrides.lookupSql(randomKey()).orElse(null);
+    }
+
+    @Benchmark
+    public String fallbackByException() {
+        String key = randomKey();
+        try {
+            return overrides.findSql(key);
+        } catch (SqlNotFoundException e) {
+            return defaults.findSql(key);
+        }
+    }
+
+    @Benchmark
+    public String fallbackByOptional() {
+        String key = randomKey();
+        return overrides.lookupSql(key).orElseGet(() -> defaults.findSql(key));
+    }
+
+    private String randomKey() {
+        return SqlRegistryFixtures.keyOf(ThreadLocalRandom.current().nextInt(keyCount));
+    }
+}
@@ -0,0 +1,40 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 이미 등록된 키만 다시 등록하므로 맵의 구조가 바뀌지 않는다. 그래서 HashMap 기반 레지스트리도 여러 스레드로 잴 수 있다.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlRegistryRegisterBenchmark {
+    @Param({"hashMap", "concurrentHashMap", "xmlSqlService", "embeddedDb"})
+    String registry;
+
+    @Param({"10", "1000", "10000"})
+    int keyCount;
+
+    SqlRegistryFixtures fixtures = new SqlRegistryFixtures();
+    SqlRegistry sqlRegistry;
+
+    @Setup
+    public void setUp() {
+        sqlRegistry = fixtures.create(registry, keyCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixtures.shutdown();
+    }
+
+    @Benchmark
+    public void registerSql() {
+        int index = ThreadLocalRandom.current().nextInt(keyCount);
+        sqlRegistry.registerSql(SqlRegistryFixtures.keyOf(index), "select * from users where id = " + index);
+    }
+}
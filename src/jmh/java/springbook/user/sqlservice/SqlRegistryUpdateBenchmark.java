@@ -0,0 +1,54 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlRegistryUpdateBenchmark {
+    private static final int BULK_SIZE = 10;
+
+    @Param({"concurrentHashMap", "copyOnWrite", "embeddedDb", "cachingEmbeddedDb"})
+    String registry;
+
+    @Param({"10", "1000", "10000"})
+    int keyCount;
+
+    SqlRegistryFixtures fixtures = new SqlRegistryFixtures();
+    UpdatableSqlRegistry sqlRegistry;
+
+    @Setup
+    public void setUp() {
+        sqlRegistry = (UpdatableSqlRegistry) fixtures.create(registry, keyCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixtures.shutdown();
+    }
+
+    @Benchmark
+    public void updateSql() {
+        int index = ThreadLocalRandom.current().nextInt(keyCount);
+        sqlRegistry.updateSql(SqlRegistryFixtures.keyOf(index), "select * from users where id = " + index);
+    }
+
+    @Benchmark
+    public void updateSqlBulk() {
+        Map<String, String> sqlmap = new HashMap<>();
+        for (int i = 0; i < BULK_SIZE; i++) {
+            int index = ThreadLocalRandom.current().nextInt(keyCount);
+            sqlmap.put(SqlRegistryFixtures.keyOf(index), "select * from users where id = " + index);
+        }
+        sqlRegistry.updateSql(sqlmap);
+    }
+}
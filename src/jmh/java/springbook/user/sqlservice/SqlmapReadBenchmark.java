@@ -0,0 +1,100 @@
+package springbook.user.sqlservice;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import springbook.user.sqlservice.compiled.CompiledSqlReader;
+import springbook.user.sqlservice.compiled.MappedSqlRegistry;
+import springbook.user.sqlservice.compiled.SqlmapCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlmapReadBenchmark {
+    @Param({"1000", "10000", "50000"})
+    int sqlCount;
+
+    File sqlmapFile;
+    File compiledFile;
+    Jaxb2Marshaller unmarshaller;
+
+    @Setup
+    public void setUp() throws IOException {
+        sqlmapFile = File.createTempFile("sqlmap", ".xml");
+        try (PrintWriter writer = new PrintWriter(sqlmapFile, "UTF-8")) {
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<sqlmap xmlns=\"http://www.epril.com/sqlmap\">");
+            for (int i = 0; i < sqlCount; i++) {
+                writer.println("    <sql key=\"KEY" + i + "\">select * from users where id = ? and login &gt; " + i + "</sql>");
+            }
+            writer.println("</sqlmap>");
+        }
+
+        compiledFile = File.createTempFile("sqlmap", ".sqlmapc");
+        SqlmapCompiler.compile(new FileSystemResource(sqlmapFile), compiledFile);
+
+        unmarshaller = new Jaxb2Marshaller();
+        unmarshaller.setContextPath("springbook.user.sqlservice.jaxb");
+    }
+
+    @TearDown
+    public void tearDown() {
+        sqlmapFile.delete();
+        compiledFile.delete();
+    }
+
+    @Benchmark
+    public SqlRegistry jaxb() {
+        HashMapSqlRegistry sqlRegistry = new HashMapSqlRegistry();
+        OxmSqlService sqlService = new OxmSqlService();
+        sqlService.setUnmarShaller(unmarshaller);
+        sqlService.setSqlmap(new FileSystemResource(sqlmapFile));
+        sqlService.setSqlRegistry(sqlRegistry);
+        sqlService.loadSql();
+        return sqlRegistry;
+    }
+
+    @Benchmark
+    public SqlRegistry stax() {
+        HashMapSqlRegistry sqlRegistry = new HashMapSqlRegistry();
+        StaxXmlSqlReader sqlReader = new StaxXmlSqlReader();
+        sqlReader.setSqlmap(new FileSystemResource(sqlmapFile));
+        sqlReader.read(sqlRegistry);
+        return sqlRegistry;
+    }
+
+    @Benchmark
+    public SqlRegistry compiled() {
+        HashMapSqlRegistry sqlRegistry = new HashMapSqlRegistry();
+        CompiledSqlReader sqlReader = new CompiledSqlReader();
+        sqlReader.setCompiledSqlmap(new FileSystemResource(compiledFile));
+        sqlReader.setSqlmap(new FileSystemResource(sqlmapFile));
+        sqlReader.read(sqlRegistry);
+        return sqlRegistry;
+    }
+
+    /**
+     * 인덱스만 만들고, 서비스 하나가 쓰는 정도의 SQL 10개만 디코딩한다.
+     */
+    @Benchmark
+    public String mappedLazy() {
+        MappedSqlRegistry sqlRegistry = new MappedSqlRegistry();
+        sqlRegistry.setCompiledSqlmap(new FileSystemResource(compiledFile));
+        sqlRegistry.setSqlmap(new FileSystemResource(sqlmapFile));
+        sqlRegistry.read(sqlRegistry);
+
+        String sql = null;
+        for (int i = 0; i < 10; i++) {
+            sql = sqlRegistry.findSql("KEY" + (i * (sqlCount / 10)));
+        }
+        return sql;
+    }
+}
@@ -2,6 +2,8 @@ package com.spring.tobyspring;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import springbook.user.metrics.TransactionMetrics;
 
 @SpringBootApplication
 public class TobySpringApplication {
@@ -10,4 +12,13 @@ public class TobySpringApplication {
         SpringApplication.run(TobySpringApplication.class, args);
     }
 
+    /**
+     * 지표는 이 빈을 setTransactionMetrics() 로 받은 TxProxyFactoryBean 이나 TransactionHandler 프록시가 채운다.
+     * 지금 이 애플리케이션에는 그런 트랜잭션 프록시가 없으므로, 하나를 등록하기 전까지 /metrics/transactions 는 빈 결과를 준다.
+     */
+    @Bean
+    public TransactionMetrics transactionMetrics() {
+        return new TransactionMetrics();
+    }
+
 }
@@ -0,0 +1,25 @@
+package com.spring.tobyspring;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import springbook.user.metrics.TransactionMetrics;
+
+import java.util.Map;
+
+/**
+ * 트랜잭션 프록시가 모은 메소드별 지표를 JSON 으로 보여준다. 시간은 모두 나노초다.
+ * 같은 TransactionMetrics 빈을 받은 프록시가 기록한 메소드만 나온다.
+ */
+@RestController
+public class TransactionMetricsController {
+    private final TransactionMetrics transactionMetrics;
+
+    public TransactionMetricsController(TransactionMetrics transactionMetrics) {
+        this.transactionMetrics = transactionMetrics;
+    }
+
+    @GetMapping("/metrics/transactions")
+    public Map<String, TransactionMetrics.MethodSnapshot> transactions() {
+        return transactionMetrics.snapshot();
+    }
+}
@@ -1,29 +1,45 @@
 package springbook.user.dao;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.jdbc.datasource.SimpleDriverDataSource;
-import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.mail.MailSender;
 import org.springframework.oxm.Unmarshaller;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.util.StringUtils;
+import springbook.user.metrics.ConnectionPoolMetrics;
 import springbook.user.service.DummyMailSender;
 import springbook.user.service.TestUserService;
 import springbook.user.service.UserService;
 import springbook.user.service.UserServiceImpl;
 import springbook.user.sqlservice.*;
+import springbook.user.sqlservice.compiled.CompiledSqlReader;
+import springbook.user.sqlservice.updatable.CachingUpdatableSqlRegistry;
+import springbook.user.sqlservice.updatable.ChangeDetectingSqlReader;
 import springbook.user.sqlservice.updatable.EmbeddedDbSqlRegistry;
+import springbook.user.sqlservice.updatable.SqlmapReloader;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.H2;
@@ -44,24 +60,80 @@ public class BeanFactory {
     @Value("${datasource.sqlfileName}")
     String sqlfileName;
 
+    @Value("${datasource.compiledSqlfileName:/sqlmap.sqlmapc}")
+    String compiledSqlfileName;
+
+    @Value("${sqlmap.locations:}")
+    String sqlmapLocations;
+
+    @Value("${datasource.pool.minimum-idle:1}")
+    int poolMinimumIdle;
+
+    @Value("${datasource.pool.maximum-size:10}")
+    int poolMaximumSize;
+
+    @Value("${datasource.pool.connection-timeout:30000}")
+    long poolConnectionTimeout;
+
+    @Value("${datasource.pool.idle-timeout:600000}")
+    long poolIdleTimeout;
+
+    @Value("${datasource.pool.leak-detection-threshold:0}")
+    long poolLeakDetectionThreshold;
+
+    @Value("${sqlmap.reload.enabled:false}")
+    boolean sqlmapReloadEnabled;
+
+    @Value("${sqlmap.reload.source-dir:src/main/resources}")
+    String sqlmapSourceDir;
+
+    @Value("${sqlmap.store.file:}")
+    String sqlmapStoreFile;
+
+    @Value("${userdao.cache.maximum-size:10000}")
+    int userCacheMaximumSize;
+
+    @Value("${userdao.cache.ttl-millis:60000}")
+    long userCacheTtlMillis;
+
+    @Value("${userdao.write-behind:false}")
+    boolean userDaoWriteBehind;
+
     @Bean
     public UserDao userDao() {
-        UserDaoJdbc userDao = new UserDaoJdbc();
-        userDao.setDataSource(dataSource());
-        userDao.setSqlService(sqlService());
+        UserDaoJdbc userDaoJdbc = new UserDaoJdbc();
+        userDaoJdbc.setDataSource(dataSource());
+        userDaoJdbc.setSqlService(sqlService());
+        userDaoJdbc.setWriteBehind(userDaoWriteBehind);
+
+        CachingUserDao userDao = new CachingUserDao();
+        userDao.setUserDao(userDaoJdbc);
+        userDao.setMaximumSize(userCacheMaximumSize);
+        userDao.setTtlMillis(userCacheTtlMillis);
         return userDao;
     }
 
     @Bean
     public DataSource dataSource() {
-        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
-        dataSource.setDriverClass(org.h2.Driver.class);
-        dataSource.setUrl(datasourceUrl);
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setDriverClassName(org.h2.Driver.class.getName());
+        dataSource.setJdbcUrl(datasourceUrl);
         dataSource.setUsername(datasourceUsername);
         dataSource.setPassword(datasourcePassword);
+        dataSource.setMinimumIdle(poolMinimumIdle);
+        dataSource.setMaximumPoolSize(poolMaximumSize);
+        dataSource.setConnectionTimeout(poolConnectionTimeout);
+        dataSource.setIdleTimeout(poolIdleTimeout);
+        dataSource.setLeakDetectionThreshold(poolLeakDetectionThreshold);
+        dataSource.setMetricsTrackerFactory(connectionPoolMetrics());
         return dataSource;
     }
 
+    @Bean
+    public ConnectionPoolMetrics connectionPoolMetrics() {
+        return new ConnectionPoolMetrics();
+    }
+
     @Bean
     public PlatformTransactionManager transactionManager() {
         return new DataSourceTransactionManager(dataSource());
@@ -77,6 +149,7 @@ public class BeanFactory {
         UserServiceImpl userService = new UserServiceImpl();
         userService.setUserDao(userDao());
         userService.setMailSender(mailSender());
+        userService.setTransactionManager(transactionManager());
         return userService;
     }
 
@@ -85,6 +158,7 @@ public class BeanFactory {
         TestUserService testUserService = new TestUserService();
         testUserService.setUserDao(userDao());
         testUserService.setMailSender(mailSender());
+        testUserService.setTransactionManager(transactionManager());
         return testUserService;
     }
 
@@ -107,14 +181,32 @@ public class BeanFactory {
 
     @Bean
     public SqlService sqlService() {
-        OxmSqlService sqlProvider = new OxmSqlService();
-        sqlProvider.setUnmarShaller(unmarshaller());
-        sqlProvider.setSqlmap(new ClassPathResource("/sqlmap.xml"));
-        sqlProvider.setSqlRegistry(embeddedDbSqlRegistry());
+        BaseSqlService sqlProvider = new BaseSqlService();
+        sqlProvider.setSqlReader(StringUtils.hasText(sqlmapStoreFile) ? changeDetectingSqlReader() : sqlReader());
+        sqlProvider.setSqlRegistry(cachingSqlRegistry());
         sqlProvider.loadSql();
         return sqlProvider;
     }
 
+    @Bean
+    public SqlReader sqlReader() {
+        // 컴파일된 sqlmap 은 sqlmap.xml 하나만 담으므로, 여러 파일로 나눴다면 바로 파싱한다
+        if (StringUtils.hasText(sqlmapLocations)) return xmlSqlReader();
+
+        CompiledSqlReader sqlReader = new CompiledSqlReader();
+        sqlReader.setCompiledSqlmap(new ClassPathResource(compiledSqlfileName));
+        sqlReader.setSqlmap(new ClassPathResource(sqlfileName));
+        sqlReader.setFallbackSqlReader(xmlSqlReader());
+        return sqlReader;
+    }
+
+    @Bean
+    public SqlReader xmlSqlReader() {
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setSqlmapLocations(StringUtils.hasText(sqlmapLocations) ? sqlmapLocations : "classpath:" + sqlfileName);
+        return sqlReader;
+    }
+
     @Bean
     public Unmarshaller unmarshaller(){
         Jaxb2Marshaller unMarshaller = new Jaxb2Marshaller();
@@ -128,14 +220,73 @@ public class BeanFactory {
     }
 
     @Bean
-    public EmbeddedDatabase embeddedDatabase(){
-        EmbeddedDatabase db = new EmbeddedDatabaseBuilder()
-                .setType(H2)
-                .addScript("/schema.sql")
-                .build();
+    public DataSource embeddedDatabase(){
+        if (!StringUtils.hasText(sqlmapStoreFile)) {
+            return new EmbeddedDatabaseBuilder()
+                    .setType(H2)
+                    .addScript("/schema.sql")
+                    .build();
+        }
+
+        // 파일에 저장하는 모드에서는 테이블을 지우지 않고 없을 때만 만든다
+        HikariDataSource db = new HikariDataSource();
+        db.setDriverClassName(org.h2.Driver.class.getName());
+        db.setJdbcUrl("jdbc:h2:file:" + sqlmapStoreFile);
+        db.setUsername("sa");
+        db.setMaximumPoolSize(2);
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("/schema-persistent.sql")), db);
         return db;
     }
 
+    @Bean
+    public ChangeDetectingSqlReader changeDetectingSqlReader() {
+        ChangeDetectingSqlReader sqlReader = new ChangeDetectingSqlReader();
+        sqlReader.setSqlReader(sqlReader());
+        sqlReader.setSqlmaps(sqlmapResources());
+        sqlReader.setDataSource(embeddedDatabase());
+        return sqlReader;
+    }
+
+    private Resource[] sqlmapResources() {
+        if (!StringUtils.hasText(sqlmapLocations)) {
+            return new Resource[]{new ClassPathResource(sqlfileName)};
+        }
+        return resolveSqlmaps(Arrays.asList(StringUtils.tokenizeToStringArray(sqlmapLocations, ",")));
+    }
+
+    // 소스 트리에서 실행하면 build 아래로 복사된 파일 대신 소스 파일을 감시하고 읽는다
+    // 클래스패스 위치마다 같은 경로의 소스 파일을 찾고, 없으면 클래스패스의 파일을 그대로 쓴다
+    private Resource[] sqlmapSources() {
+        String[] locations = StringUtils.hasText(sqlmapLocations)
+                ? StringUtils.tokenizeToStringArray(sqlmapLocations, ",")
+                : new String[]{"classpath:" + sqlfileName};
+
+        List<String> sourceLocations = new ArrayList<>();
+        for (String location : locations) {
+            String sourceLocation = location.replaceFirst("^classpath\\*?:/?", "file:" + sqlmapSourceDir + "/");
+            boolean sourceExists = !sourceLocation.equals(location)
+                    && resolveSqlmaps(Collections.singletonList(sourceLocation)).length > 0;
+            sourceLocations.add(sourceExists ? sourceLocation : location);
+        }
+        return resolveSqlmaps(sourceLocations);
+    }
+
+    private Resource[] resolveSqlmaps(List<String> locations) {
+        List<Resource> resources = new ArrayList<>();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (String location : locations) {
+            try {
+                for (Resource resource : resolver.getResources(location)) {
+                    if (resource.exists()) resources.add(resource);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(location + "을 가져올 수 없습니다.", e);
+            }
+        }
+        resources.sort(Comparator.comparing(Resource::getDescription));
+        return resources.toArray(new Resource[0]);
+    }
+
     @Bean
     public EmbeddedDbSqlRegistry embeddedDbSqlRegistry(){
         EmbeddedDbSqlRegistry sqlRegistry = new EmbeddedDbSqlRegistry();
@@ -143,5 +294,27 @@ public class BeanFactory {
         return sqlRegistry;
     }
 
+    @Bean
+    public CachingUpdatableSqlRegistry cachingSqlRegistry(){
+        CachingUpdatableSqlRegistry sqlRegistry = new CachingUpdatableSqlRegistry();
+        sqlRegistry.setSqlRegistry(embeddedDbSqlRegistry());
+        return sqlRegistry;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @DependsOn("sqlService")
+    public SqlmapReloader sqlmapReloader(){
+        Resource[] sqlmaps = sqlmapSources();
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setSqlmaps(sqlmaps);
+
+        SqlmapReloader sqlmapReloader = new SqlmapReloader();
+        sqlmapReloader.setSqlReader(sqlReader);
+        sqlmapReloader.setSqlRegistry(cachingSqlRegistry());
+        sqlmapReloader.setSqlmaps(sqlmaps);
+        sqlmapReloader.setEnabled(sqlmapReloadEnabled);
+        return sqlmapReloader;
+    }
+
 
 }
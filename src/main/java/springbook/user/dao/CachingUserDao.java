@@ -0,0 +1,277 @@
+package springbook.user.dao;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import springbook.user.domain.Level;
+import springbook.user.domain.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * UserDao.get() 결과를 id 별로 캐시한다. 캐시는 ConcurrentHashMap 이라 캐시 적중은 락 없이 읽는다.
+ * <p>크기 제한은 근사 LRU 다. 항목마다 마지막으로 읽은 시각을 기록해 두고, 최대 크기를 넘으면 한 스레드가 전체를 훑어서
+ * 만료된 항목과 가장 오래 읽지 않은 항목을 한꺼번에 지운다. 최대 크기의 1/10 을 더 지워서 훑는 횟수를 줄인다.
+ * 지우는 동안 기다리는 것은 캐시에 없어서 DB 를 읽은 스레드뿐이고, 그 사이 잠시 최대 크기를 넘을 수 있다.
+ */
+public class CachingUserDao implements UserDao {
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final long DEFAULT_TTL_MILLIS = 60000;
+
+    private UserDao userDao;
+
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MILLIS);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // 무효화가 일어날 때마다 증가시켜서, 무효화 이전에 DB 에서 읽은 값이 캐시에 들어가지 않도록 한다
+    private final AtomicLong generation = new AtomicLong();
+
+    public void setUserDao(UserDao userDao) {
+        this.userDao = userDao;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public User get(String id) {
+        long observedGeneration = generation.get();
+        CachedUser cached = cache.get(id);
+        if (cached != null) {
+            long now = System.nanoTime();
+            if (!cached.isExpired(now)) {
+                cached.lastAccess = now;
+                hitCount.increment();
+                return copyOf(cached.user);
+            }
+            if (cache.remove(id, cached)) {
+                evictionCount.increment();
+            }
+        }
+
+        missCount.increment();
+        User user = userDao.get(id);
+        if (isCacheable()) {
+            long now = System.nanoTime();
+            CachedUser loaded = new CachedUser(copyOf(user), now + ttlNanos, now);
+            cache.put(id, loaded);
+            // 넣는 사이에 무효화가 있었다면 무효화 이전에 읽은 값일 수 있으므로 도로 뺀다
+            if (generation.get() != observedGeneration) {
+                cache.remove(id, loaded);
+            }
+            if (cache.size() > maximumSize) {
+                evictExcess();
+            }
+        }
+        return user;
+    }
+
+    // 만료된 항목과 가장 오래 읽지 않은 항목을 지운다. 먼저 지운 스레드가 충분히 지웠으면 그냥 돌아간다
+    private void evictExcess() {
+        evictionLock.lock();
+        try {
+            if (cache.size() <= maximumSize) return;
+
+            long now = System.nanoTime();
+            for (Map.Entry<String, CachedUser> entry : cache.entrySet()) {
+                if (entry.getValue().isExpired(now) && cache.remove(entry.getKey(), entry.getValue())) {
+                    evictionCount.increment();
+                }
+            }
+
+            int excess = cache.size() - maximumSize;
+            if (excess <= 0) return;
+            excess += maximumSize / 10;
+
+            long[] lastAccesses = new long[cache.size()];
+            int count = 0;
+            for (CachedUser cached : cache.values()) {
+                if (count == lastAccesses.length) break;
+                lastAccesses[count++] = cached.lastAccess;
+            }
+            if (count == 0) return;
+            Arrays.sort(lastAccesses, 0, count);
+            long threshold = lastAccesses[Math.min(excess, count) - 1];
+
+            for (Map.Entry<String, CachedUser> entry : cache.entrySet()) {
+                if (excess == 0) break;
+                if (entry.getValue().lastAccess <= threshold && cache.remove(entry.getKey(), entry.getValue())) {
+                    evictionCount.increment();
+                    excess--;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> getAll() {
+        return userDao.getAll();
+    }
+
+    @Override
+    public List<User> getAllAfter(String lastId, int limit) {
+        return userDao.getAllAfter(lastId, limit);
+    }
+
+    @Override
+    public int getCount() {
+        return userDao.getCount();
+    }
+
+    @Override
+    public void add(User user) {
+        userDao.add(user);
+        invalidate(user.getId());
+    }
+
+    @Override
+    public void addAll(Collection<User> users) {
+        userDao.addAll(users);
+        invalidate(idsOf(users));
+    }
+
+    @Override
+    public void update(User user) {
+        userDao.update(user);
+        invalidate(user.getId());
+    }
+
+    @Override
+    public void updateAll(Collection<User> users) {
+        userDao.updateAll(users);
+        invalidate(idsOf(users));
+    }
+
+    @Override
+    public List<User> upgradeLevels(Level level, Integer minLogin, Integer minRecommend) {
+        List<User> upgraded = userDao.upgradeLevels(level, minLogin, minRecommend);
+        invalidate(idsOf(upgraded));
+        return upgraded;
+    }
+
+    @Override
+    public void deleteAll() {
+        userDao.deleteAll();
+        invalidateAll();
+    }
+
+    @Override
+    public void createTable() {
+        userDao.createTable();
+        invalidateAll();
+    }
+
+    private void invalidate(String id) {
+        invalidate(Collections.singletonList(id));
+    }
+
+    private void invalidate(final List<String> ids) {
+        evict(ids);
+        // 트랜잭션 안에서 바뀐 값은 커밋(또는 롤백)된 뒤에 한 번 더 지워야 다른 스레드가 읽어 둔 이전 값이 남지 않는다
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(ids);
+                }
+            });
+        }
+    }
+
+    private void invalidateAll() {
+        evict(null);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(null);
+                }
+            });
+        }
+    }
+
+    private void evict(List<String> ids) {
+        generation.incrementAndGet();
+        if (ids == null) {
+            cache.clear();
+        } else {
+            for (String id : ids) {
+                cache.remove(id);
+            }
+        }
+    }
+
+    private boolean isCacheable() {
+        // 쓰기 트랜잭션 안에서 읽은 값은 아직 커밋되지 않았을 수 있으므로 캐시하지 않는다
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private List<String> idsOf(Collection<User> users) {
+        List<String> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    private static User copyOf(User user) {
+        return new User(user.getId(), user.getName(), user.getPassword(), user.getLevel(), user.getLogin(), user.getRecommend(), user.getEamil());
+    }
+
+    private static class CachedUser {
+        final User user;
+        final long expiresAt;
+        // 근사 LRU 용. 여러 스레드가 덮어써도 대략 최근 값이면 충분하다
+        volatile long lastAccess;
+
+        CachedUser(User user, long expiresAt, long lastAccess) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
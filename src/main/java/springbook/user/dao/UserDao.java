@@ -1,16 +1,25 @@
 package springbook.user.dao;
 
+import springbook.user.domain.Level;
 import springbook.user.domain.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserDao {
     void add(User user);
+    void addAll(Collection<User> users);
     User get(String id);
     List<User> getAll();
+    List<User> getAllAfter(String lastId, int limit);
     void deleteAll();
     int getCount();
     public void createTable();
     void update(User user);
+    void updateAll(Collection<User> users);
+    /**
+     * level 인 사용자 중 기준을 넘은 사용자를 다음 레벨로 올리고 올린 사용자를 돌려준다.
+     * 기준이 null 이면 그 항목은 보지 않는다.
+     */
+    List<User> upgradeLevels(Level level, Integer minLogin, Integer minRecommend);
 }
-
@@ -2,21 +2,46 @@ package springbook.user.dao;
 
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
 import springbook.user.domain.Level;
 import springbook.user.domain.User;
+import springbook.user.sqlservice.SqlHandle;
 import springbook.user.sqlservice.SqlService;
 
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 public class UserDaoJdbc implements UserDao {
-    private SqlService sqlService;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private SqlHandle userAddSql;
+    private SqlHandle userGetSql;
+    private SqlHandle userGetAllSql;
+    private SqlHandle userGetAllAfterSql;
+    private SqlHandle userDeleteAllSql;
+    private SqlHandle userGetCountSql;
+    private SqlHandle userUpdateSql;
+    private SqlHandle userGetUpgradableSql;
+    private SqlHandle userUpgradeLevelSql;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean writeBehind;
 
     public void setSqlService(SqlService sqlService){
-        this.sqlService = sqlService;
+        this.userAddSql = sqlService.getSqlHandle("userAdd");
+        this.userGetSql = sqlService.getSqlHandle("userGet");
+        this.userGetAllSql = sqlService.getSqlHandle("userGetAll");
+        this.userGetAllAfterSql = sqlService.getSqlHandle("userGetAllAfter");
+        this.userDeleteAllSql = sqlService.getSqlHandle("userDeleteAll");
+        this.userGetCountSql = sqlService.getSqlHandle("userGetCount");
+        this.userUpdateSql = sqlService.getSqlHandle("userUpdate");
+        this.userGetUpgradableSql = sqlService.getSqlHandle("userGetUpgradable");
+        this.userUpgradeLevelSql = sqlService.getSqlHandle("userUpgradeLevel");
     }
 
     private RowMapper<User> userMapper = new RowMapper<User>() {
@@ -44,33 +69,138 @@ public class UserDaoJdbc implements UserDao {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
     }
 
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * true 면 트랜잭션 안의 add, update, deleteAll 을 바로 보내지 않고 모았다가 커밋 직전에 배치로 보낸다.
+     * 같은 트랜잭션에서 조회하면 모아 둔 SQL 을 먼저 보낸다. 키 중복 같은 쓰기 오류는 커밋할 때 드러난다.
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
     public void add(final User user) {
-        this.jdbcTemplate.update(this.sqlService.getSql("userAdd"), user.getId(), user.getName(), user.getPassword(), user.getLevel().intValue(), user.getLogin(), user.getRecommend(), user.getEamil());
+        write(this.userAddSql.getSql(), user.getId(), user.getName(), user.getPassword(), user.getLevel().intValue(), user.getLogin(), user.getRecommend(), user.getEamil());
+    }
+
+    public void addAll(Collection<User> users) {
+        if (users.isEmpty()) return;
+
+        WriteBehindQueue queue = writeBehindQueue();
+        if (queue != null) {
+            for (User user : users) {
+                queue.add(this.userAddSql.getSql(), user.getId(), user.getName(), user.getPassword(), user.getLevel().intValue(), user.getLogin(), user.getRecommend(), user.getEamil());
+            }
+            return;
+        }
+
+        this.jdbcTemplate.batchUpdate(this.userAddSql.getSql(), users, this.batchSize, (ps, user) -> {
+            ps.setString(1, user.getId());
+            ps.setString(2, user.getName());
+            ps.setString(3, user.getPassword());
+            ps.setInt(4, user.getLevel().intValue());
+            ps.setInt(5, user.getLogin());
+            ps.setInt(6, user.getRecommend());
+            ps.setString(7, user.getEamil());
+        });
     }
 
     public User get(String id) {
-        return this.jdbcTemplate.queryForObject(this.sqlService.getSql("userGet"), this.userMapper, new Object[]{id});
+        flush();
+        return this.jdbcTemplate.queryForObject(this.userGetSql.getSql(), this.userMapper, new Object[]{id});
     }
 
     public void deleteAll() {
-        this.jdbcTemplate.update(this.sqlService.getSql("userDeleteAll"));
+        write(this.userDeleteAllSql.getSql());
     }
 
     public int getCount() {
-        return this.jdbcTemplate.queryForObject(this.sqlService.getSql("userGetCount"), Integer.class);
+        flush();
+        return this.jdbcTemplate.queryForObject(this.userGetCountSql.getSql(), Integer.class);
     }
 
     public List<User> getAll() {
-        return this.jdbcTemplate.query(this.sqlService.getSql("userGetAll"), this.userMapper);
+        flush();
+        return this.jdbcTemplate.query(this.userGetAllSql.getSql(), this.userMapper);
+    }
+
+    public List<User> getAllAfter(String lastId, int limit) {
+        flush();
+        return this.jdbcTemplate.query(this.userGetAllAfterSql.getSql(), this.userMapper, lastId, limit);
     }
 
     public void update(User user) {
-        this.jdbcTemplate.update(this.sqlService.getSql("userUpdate"), user.getName(), user.getPassword(), user.getLevel().intValue(), user.getLogin(), user.getRecommend(), user.getEamil(), user.getId());
+        write(this.userUpdateSql.getSql(), user.getName(), user.getPassword(), user.getLevel().intValue(), user.getLogin(), user.getRecommend(), user.getEamil(), user.getId());
+    }
+
+    public void updateAll(Collection<User> users) {
+        if (users.isEmpty()) return;
+
+        WriteBehindQueue queue = writeBehindQueue();
+        if (queue != null) {
+            for (User user : users) {
+                queue.add(this.userUpdateSql.getSql(), user.getName(), user.getPassword(), user.getLevel().intValue(), user.getLogin(), user.getRecommend(), user.getEamil(), user.getId());
+            }
+            return;
+        }
+
+        this.jdbcTemplate.batchUpdate(this.userUpdateSql.getSql(), users, this.batchSize, (ps, user) -> {
+            ps.setString(1, user.getName());
+            ps.setString(2, user.getPassword());
+            ps.setInt(3, user.getLevel().intValue());
+            ps.setInt(4, user.getLogin());
+            ps.setInt(5, user.getRecommend());
+            ps.setString(6, user.getEamil());
+            ps.setString(7, user.getId());
+        });
+    }
+
+    public List<User> upgradeLevels(Level level, Integer minLogin, Integer minRecommend) {
+        Level nextLevel = level.nextLevel();
+        if (nextLevel == null) {
+            throw new IllegalArgumentException(level + "은 업그레이드가 불가능합니다");
+        }
+
+        flush();
+        // null 기준은 SQL 의 coalesce 가 컬럼 값으로 바꿔서 조건에서 빠진다. 타입을 알 수 있도록 INTEGER 로 넘긴다
+        SqlParameterValue login = new SqlParameterValue(Types.INTEGER, minLogin);
+        SqlParameterValue recommend = new SqlParameterValue(Types.INTEGER, minRecommend);
+        List<User> upgradable = this.jdbcTemplate.query(this.userGetUpgradableSql.getSql(), this.userMapper, level.intValue(), login, recommend);
+        if (upgradable.isEmpty()) {
+            return upgradable;
+        }
+
+        this.jdbcTemplate.update(this.userUpgradeLevelSql.getSql(), nextLevel.intValue(), level.intValue(), login, recommend);
+        for (User user : upgradable) {
+            user.upgradeLevel();
+        }
+        return upgradable;
     }
 
     public void createTable() {
+        flush();
         this.jdbcTemplate.update("drop table users if exists");
         this.jdbcTemplate.update("CREATE TABLE users ( id varchar(100), name varchar(100), password varchar(100), level int(9), login int(9), recommend int(9), email varchar(100));");
     }
-}
 
+    private void write(String sql, Object... args) {
+        WriteBehindQueue queue = writeBehindQueue();
+        if (queue != null) {
+            queue.add(sql, args);
+        } else {
+            this.jdbcTemplate.update(sql, args);
+        }
+    }
+
+    private WriteBehindQueue writeBehindQueue() {
+        return this.writeBehind ? WriteBehindQueue.current(this, this.jdbcTemplate, this.batchSize) : null;
+    }
+
+    private void flush() {
+        if (this.writeBehind) {
+            WriteBehindQueue.flush(this);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package springbook.user.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 한 트랜잭션 안에서 DAO 가 보낸 쓰기 SQL 을 모아 두었다가 커밋 직전에 JDBC 배치로 보낸다.
+ * <p>같은 SQL 이 연달아 오면 한 구간으로 묶고, 구간 순서는 호출 순서를 그대로 지킨다.
+ * 트랜잭션이 롤백되면 모아 둔 SQL 은 보내지 않고 버린다.
+ * <p>트랜잭션 리소스로 key 에 묶여 있으며, REQUIRES_NEW 등으로 트랜잭션이 잠시 중단되면 함께 풀렸다가 재개될 때 다시 묶인다.
+ */
+class WriteBehindQueue implements TransactionSynchronization {
+    private final Object key;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    WriteBehindQueue(Object key, JdbcTemplate jdbcTemplate, int batchSize) {
+        this.key = key;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 현재 트랜잭션에 묶인 큐. 없으면 만들어서 묶는다. 쓰기를 미룰 수 있는 트랜잭션이 아니면 null 을 돌려준다.
+     */
+    static WriteBehindQueue current(Object key, JdbcTemplate jdbcTemplate, int batchSize) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+
+        WriteBehindQueue queue = (WriteBehindQueue) TransactionSynchronizationManager.getResource(key);
+        if (queue == null) {
+            queue = new WriteBehindQueue(key, jdbcTemplate, batchSize);
+            TransactionSynchronizationManager.bindResource(key, queue);
+            TransactionSynchronizationManager.registerSynchronization(queue);
+        }
+        return queue;
+    }
+
+    /**
+     * 현재 트랜잭션에 모아 둔 SQL 이 있으면 지금 보낸다.
+     */
+    static void flush(Object key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+
+        WriteBehindQueue queue = (WriteBehindQueue) TransactionSynchronizationManager.getResource(key);
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
+    void add(String sql, Object... args) {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last == null || !last.sql.equals(sql)) {
+            last = new Segment(sql);
+            segments.add(last);
+        }
+        last.args.add(args);
+    }
+
+    void flush() {
+        // 보내는 도중 예외가 나도 같은 SQL 을 다시 보내지 않도록 먼저 비운다
+        List<Segment> pending = new ArrayList<>(segments);
+        segments.clear();
+
+        for (Segment segment : pending) {
+            if (segment.args.size() == 1) {
+                jdbcTemplate.update(segment.sql, segment.args.get(0));
+                continue;
+            }
+            for (int from = 0; from < segment.args.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, segment.args.size());
+                jdbcTemplate.batchUpdate(segment.sql, segment.args.subList(from, to));
+            }
+        }
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+        flush();
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResource(key);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(key, this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        segments.clear();
+        TransactionSynchronizationManager.unbindResourceIfPossible(key);
+    }
+
+    // 연달아 들어온 같은 SQL 과 그 인자들
+    private static class Segment {
+        final String sql;
+        final List<Object[]> args = new ArrayList<>();
+
+        Segment(String sql) {
+            this.sql = sql;
+        }
+    }
+}
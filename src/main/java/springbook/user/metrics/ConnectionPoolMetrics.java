@@ -0,0 +1,58 @@
+package springbook.user.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+    private final LatencyHistogram acquireTime = new LatencyHistogram();
+    private final LongAdder connectionTimeouts = new LongAdder();
+
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireTime.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                connectionTimeouts.increment();
+            }
+        };
+    }
+
+    public int getActiveConnections() {
+        PoolStats stats = this.poolStats;
+        return (stats == null) ? 0 : stats.getActiveConnections();
+    }
+
+    public int getIdleConnections() {
+        PoolStats stats = this.poolStats;
+        return (stats == null) ? 0 : stats.getIdleConnections();
+    }
+
+    public int getTotalConnections() {
+        PoolStats stats = this.poolStats;
+        return (stats == null) ? 0 : stats.getTotalConnections();
+    }
+
+    public int getPendingThreads() {
+        PoolStats stats = this.poolStats;
+        return (stats == null) ? 0 : stats.getPendingThreads();
+    }
+
+    public long getConnectionTimeouts() {
+        return connectionTimeouts.sum();
+    }
+
+    public LatencyHistogram.Snapshot getAcquireTime() {
+        return acquireTime.snapshot();
+    }
+}
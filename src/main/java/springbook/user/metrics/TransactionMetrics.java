@@ -0,0 +1,101 @@
+package springbook.user.metrics;
+
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 트랜잭션 프록시가 메소드별로 기록하는 트랜잭션 단계별 지연 시간과 결과 횟수.
+ * <p>begin 은 트랜잭션 매니저의 getTransaction() 으로, 커넥션을 얻는 시간이 포함된다.
+ * body 는 타깃 메소드 실행, commit 과 rollback 은 각각 트랜잭션 매니저의 commit(), rollback() 이다.
+ * <p>메소드는 "springbook.user.service.UserService.get(java.lang.String)" 처럼 인터페이스의 전체 이름과 파라미터 타입으로 구분하므로,
+ * 이름이 같은 인터페이스나 오버로딩한 메소드도 따로 집계된다.
+ */
+public class TransactionMetrics {
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    /**
+     * 메소드의 기록 대상. 프록시는 메소드마다 처음에 한 번 받아 두고 호출마다 찾지 않는다.
+     */
+    public MethodMetrics forMethod(Method method) {
+        return methods.computeIfAbsent(nameOf(method), key -> new MethodMetrics());
+    }
+
+    private static String nameOf(Method method) {
+        StringJoiner parameters = new StringJoiner(",", "(", ")");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            parameters.add(parameterType.getTypeName());
+        }
+        return method.getDeclaringClass().getName() + "." + method.getName() + parameters;
+    }
+
+    public Map<String, MethodSnapshot> snapshot() {
+        Map<String, MethodSnapshot> snapshot = new TreeMap<>();
+        for (Map.Entry<String, MethodMetrics> entry : methods.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    public static class MethodMetrics {
+        private final LatencyHistogram beginTime = new LatencyHistogram();
+        private final LatencyHistogram bodyTime = new LatencyHistogram();
+        private final LatencyHistogram commitTime = new LatencyHistogram();
+        private final LatencyHistogram rollbackTime = new LatencyHistogram();
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder rollbacks = new LongAdder();
+        private final LongAdder exceptions = new LongAdder();
+
+        public void recordBegin(long nanos) {
+            beginTime.record(nanos);
+        }
+
+        public void recordBody(long nanos, boolean exception) {
+            bodyTime.record(nanos);
+            if (exception) exceptions.increment();
+        }
+
+        public void recordCommit(long nanos) {
+            commitTime.record(nanos);
+            commits.increment();
+        }
+
+        public void recordRollback(long nanos) {
+            rollbackTime.record(nanos);
+            rollbacks.increment();
+        }
+
+        MethodSnapshot snapshot() {
+            return new MethodSnapshot(commits.sum(), rollbacks.sum(), exceptions.sum(),
+                    beginTime.snapshot(), bodyTime.snapshot(), commitTime.snapshot(), rollbackTime.snapshot());
+        }
+    }
+
+    @Getter
+    public static class MethodSnapshot {
+        private final long commits;
+        private final long rollbacks;
+        // 타깃 메소드가 던진 예외 수. 롤백 규칙에 따라 커밋된 경우도 포함한다
+        private final long exceptions;
+        private final LatencyHistogram.Snapshot beginTime;
+        private final LatencyHistogram.Snapshot bodyTime;
+        private final LatencyHistogram.Snapshot commitTime;
+        private final LatencyHistogram.Snapshot rollbackTime;
+
+        MethodSnapshot(long commits, long rollbacks, long exceptions, LatencyHistogram.Snapshot beginTime,
+                       LatencyHistogram.Snapshot bodyTime, LatencyHistogram.Snapshot commitTime, LatencyHistogram.Snapshot rollbackTime) {
+            this.commits = commits;
+            this.rollbacks = rollbacks;
+            this.exceptions = exceptions;
+            this.beginTime = beginTime;
+            this.bodyTime = bodyTime;
+            this.commitTime = commitTime;
+            this.rollbackTime = rollbackTime;
+        }
+    }
+}
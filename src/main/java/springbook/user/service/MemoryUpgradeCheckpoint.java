@@ -0,0 +1,20 @@
+package springbook.user.service;
+
+public class MemoryUpgradeCheckpoint implements UpgradeCheckpoint {
+    private volatile String lastId;
+
+    @Override
+    public String load() {
+        return lastId;
+    }
+
+    @Override
+    public void save(String lastId) {
+        this.lastId = lastId;
+    }
+
+    @Override
+    public void clear() {
+        this.lastId = null;
+    }
+}
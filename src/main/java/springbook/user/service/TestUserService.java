@@ -8,12 +8,13 @@ import java.util.List;
 public class TestUserService extends UserServiceImpl {
         private String id = "madnite1";
 
+        // 업그레이드 결과를 updateAll 로 DB 에 보낸 다음에 실패해야 롤백을 확인할 수 있다
         @Override
-        protected void upgradeLevel(User user) {
+        protected void sendUpgradeMail(User user) {
             if (user.getId().equals(this.id)) {
                 throw new TestUserServiceException();
             }
-            super.upgradeLevel(user);
+            super.sendUpgradeMail(user);
         }
 
         @Override
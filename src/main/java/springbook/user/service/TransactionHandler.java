@@ -2,19 +2,50 @@ package springbook.user.service;
 
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.interceptor.DefaultTransactionAttribute;
+import org.springframework.transaction.interceptor.NameMatchTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+import springbook.user.metrics.TransactionMetrics;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 타깃 메소드를 트랜잭션 안에서 호출한다.
+ * <p>transactionAttributes 를 주면 메소드 이름 패턴마다 전파, 격리수준, 읽기전용, 제한시간, 롤백 규칙을 따로 정할 수 있다.
+ * 패턴과 속성은 {@link NameMatchTransactionAttributeSource} 형식을 따른다. (예: get* = PROPAGATION_REQUIRED,readOnly,timeout_5)
+ * 속성이 없으면 이전처럼 pattern 으로 시작하는 메소드만 기본 트랜잭션으로 실행하고, 어떤 예외가 나든 롤백한다.
+ */
 public class TransactionHandler implements InvocationHandler {
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final TransactionAttribute ROLLBACK_ON_ANY_EXCEPTION = new DefaultTransactionAttribute() {
+        @Override
+        public boolean rollbackOn(Throwable ex) {
+            return true;
+        }
+    };
+
     private Object target;
     private PlatformTransactionManager transactionManager;
     private String pattern;
+    private TransactionAttributeSource transactionAttributeSource;
+    private TransactionMetrics transactionMetrics;
+
+    // 메소드마다 트랜잭션 여부와 호출 방법을 처음 호출될 때 한 번만 정해 둔다
+    private final Map<Method, Dispatch> dispatches = new ConcurrentHashMap<>();
 
     public void setTarget(Object target) {
         this.target = target;
+        dispatches.clear();
     }
 
     public void setTransactionManager(PlatformTransactionManager transactionManager) {
@@ -23,27 +54,155 @@ public class TransactionHandler implements InvocationHandler {
 
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        dispatches.clear();
+    }
+
+    public void setTransactionAttributes(Properties transactionAttributes) {
+        NameMatchTransactionAttributeSource attributeSource = new NameMatchTransactionAttributeSource();
+        attributeSource.setProperties(transactionAttributes);
+        setTransactionAttributeSource(attributeSource);
+    }
+
+    public void setTransactionAttributeSource(TransactionAttributeSource transactionAttributeSource) {
+        this.transactionAttributeSource = transactionAttributeSource;
+        dispatches.clear();
+    }
+
+    /**
+     * 지정하면 트랜잭션 메소드마다 단계별 지연 시간과 커밋, 롤백 횟수를 기록한다.
+     */
+    public void setTransactionMetrics(TransactionMetrics transactionMetrics) {
+        this.transactionMetrics = transactionMetrics;
+        dispatches.clear();
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        if (method.getName().startsWith(pattern)) {
-            return invokeInTransaction(method, args);
-        } else {
-            return method.invoke(target, args);
+        Dispatch dispatch = dispatches.get(method);
+        if (dispatch == null) {
+            dispatch = dispatches.computeIfAbsent(method, this::createDispatch);
+        }
+
+        Object[] arguments = (args == null) ? NO_ARGS : args;
+        if (dispatch.attribute == null) {
+            return dispatch.invoker.invokeExact(arguments);
+        }
+        if (dispatch.metrics != null) {
+            return invokeInTransactionWithMetrics(dispatch, arguments);
+        }
+        return invokeInTransaction(dispatch, arguments);
+    }
+
+    private Object invokeInTransaction(Dispatch dispatch, Object[] args) throws Throwable {
+        TransactionStatus status = this.transactionManager.getTransaction(dispatch.attribute);
+
+        Object ret;
+        try {
+            ret = dispatch.invoker.invokeExact(args);
+        } catch (Throwable e) {
+            try {
+                if (dispatch.attribute.rollbackOn(e)) {
+                    this.transactionManager.rollback(status);
+                } else {
+                    this.transactionManager.commit(status);
+                }
+            } catch (RuntimeException | Error ex) {
+                TransactionProxySupport.keepApplicationException(ex, e);
+                throw ex;
+            }
+            throw e;
         }
+        this.transactionManager.commit(status);
+        return ret;
     }
 
-    private Object invokeInTransaction(Method method, Object[] args) throws Throwable {
-        TransactionStatus status = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+    private Object invokeInTransactionWithMetrics(Dispatch dispatch, Object[] args) throws Throwable {
+        TransactionMetrics.MethodMetrics metrics = dispatch.metrics;
+
+        long start = System.nanoTime();
+        TransactionStatus status = this.transactionManager.getTransaction(dispatch.attribute);
+        long bodyStart = System.nanoTime();
+        metrics.recordBegin(bodyStart - start);
 
+        Object ret;
         try {
-            Object ret = method.invoke(target, args);
-            this.transactionManager.commit(status);
-            return ret;
-        } catch (InvocationTargetException e) {
-            this.transactionManager.rollback(status);
-            throw e.getTargetException();
+            ret = dispatch.invoker.invokeExact(args);
+        } catch (Throwable e) {
+            long end = System.nanoTime();
+            metrics.recordBody(end - bodyStart, true);
+            try {
+                if (dispatch.attribute.rollbackOn(e)) {
+                    this.transactionManager.rollback(status);
+                    metrics.recordRollback(System.nanoTime() - end);
+                } else {
+                    this.transactionManager.commit(status);
+                    metrics.recordCommit(System.nanoTime() - end);
+                }
+            } catch (RuntimeException | Error ex) {
+                TransactionProxySupport.keepApplicationException(ex, e);
+                throw ex;
+            }
+            throw e;
+        }
+        long end = System.nanoTime();
+        metrics.recordBody(end - bodyStart, false);
+        this.transactionManager.commit(status);
+        metrics.recordCommit(System.nanoTime() - end);
+        return ret;
+    }
+
+    private Dispatch createDispatch(Method method) {
+        TransactionAttribute attribute = getTransactionAttribute(method);
+        TransactionMetrics.MethodMetrics metrics = (attribute != null && transactionMetrics != null) ? transactionMetrics.forMethod(method) : null;
+        return new Dispatch(attribute, metrics, invokerFor(method));
+    }
+
+    /**
+     * 메소드에 적용할 트랜잭션 속성. 트랜잭션 없이 호출할 메소드면 null 이다.
+     * equals, hashCode, toString 은 생성한 프록시 클래스와 마찬가지로 패턴과 상관없이 트랜잭션 없이 호출한다.
+     */
+    TransactionAttribute getTransactionAttribute(Method method) {
+        if (method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        if (transactionAttributeSource != null) {
+            return transactionAttributeSource.getTransactionAttribute(method, target.getClass());
+        }
+        if (pattern != null && method.getName().startsWith(pattern)) {
+            return ROLLBACK_ON_ANY_EXCEPTION;
+        }
+        return null;
+    }
+
+    // 타깃을 묶고 인자 배열을 펼쳐서 (Object[])Object 모양으로 맞춘다. 반환값 박싱도 여기서 처리된다
+    private MethodHandle invokerFor(Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            method.setAccessible(true);
+            try {
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(method + " 를 호출할 수 없습니다.", ex);
+            }
+        }
+        return handle.bindTo(target)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(INVOKER_TYPE);
+    }
+
+    private static class Dispatch {
+        // null 이면 트랜잭션 없이 호출한다. 트랜잭션 속성은 바뀌지 않으므로 호출마다 만들지 않고 공유한다
+        final TransactionAttribute attribute;
+        // 지표를 기록하지 않으면 null
+        final TransactionMetrics.MethodMetrics metrics;
+        final MethodHandle invoker;
+
+        Dispatch(TransactionAttribute attribute, TransactionMetrics.MethodMetrics metrics, MethodHandle invoker) {
+            this.attribute = attribute;
+            this.metrics = metrics;
+            this.invoker = invoker;
         }
     }
 }
@@ -0,0 +1,128 @@
+package springbook.user.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import springbook.user.metrics.TransactionMetrics;
+
+/**
+ * {@link TxProxyClassGenerator} 가 만든 프록시 클래스가 호출하는 트랜잭션 경계 코드.
+ * 메소드는 프록시 클래스를 만들 때 정한 번호로 구분한다. 트랜잭션 속성이 없는 메소드는 begin() 이 null 을 돌려주고
+ * commit(), rollback() 은 아무것도 하지 않는다.
+ * <p>프록시 클래스는 별도의 클래스 로더에 정의되므로 이 클래스와 프록시가 부르는 메소드는 public 이어야 한다.
+ */
+public class TransactionProxySupport {
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionAttribute[] attributes;
+    private final TransactionMetrics.MethodMetrics[] metrics;
+
+    public TransactionProxySupport(PlatformTransactionManager transactionManager, TransactionAttribute[] attributes) {
+        this(transactionManager, attributes, null);
+    }
+
+    /**
+     * @param metrics 메소드 번호별 지표 기록 대상. null 이면 기록하지 않는다
+     */
+    public TransactionProxySupport(PlatformTransactionManager transactionManager, TransactionAttribute[] attributes,
+                                   TransactionMetrics.MethodMetrics[] metrics) {
+        this.transactionManager = transactionManager;
+        this.attributes = attributes;
+        this.metrics = metrics;
+    }
+
+    public Invocation begin(int index) {
+        TransactionAttribute attribute = attributes[index];
+        if (attribute == null) return null;
+
+        if (metrics == null) {
+            return new Invocation(transactionManager.getTransaction(attribute), index, 0);
+        }
+        long start = System.nanoTime();
+        TransactionStatus status = transactionManager.getTransaction(attribute);
+        long bodyStart = System.nanoTime();
+        metrics[index].recordBegin(bodyStart - start);
+        return new Invocation(status, index, bodyStart);
+    }
+
+    public void commit(Invocation invocation) {
+        if (invocation == null) return;
+
+        if (metrics == null) {
+            transactionManager.commit(invocation.status);
+            return;
+        }
+        long end = System.nanoTime();
+        metrics[invocation.index].recordBody(end - invocation.bodyStart, false);
+        commitTimed(invocation, end);
+    }
+
+    /**
+     * 타깃 메소드가 예외를 던졌을 때 롤백 규칙에 따라 롤백하거나 커밋한다.
+     * 롤백이나 커밋이 실패하면 그 예외가 던져지고, 타깃이 던진 예외는 그 안에 남긴다.
+     */
+    public void rollback(Invocation invocation, Throwable ex) {
+        if (invocation == null) return;
+
+        try {
+            complete(invocation, ex);
+        } catch (RuntimeException | Error completionEx) {
+            keepApplicationException(completionEx, ex);
+            throw completionEx;
+        }
+    }
+
+    private void complete(Invocation invocation, Throwable ex) {
+        boolean rollback = attributes[invocation.index].rollbackOn(ex);
+        if (metrics == null) {
+            if (rollback) {
+                transactionManager.rollback(invocation.status);
+            } else {
+                transactionManager.commit(invocation.status);
+            }
+            return;
+        }
+
+        long end = System.nanoTime();
+        metrics[invocation.index].recordBody(end - invocation.bodyStart, true);
+        if (rollback) {
+            transactionManager.rollback(invocation.status);
+            metrics[invocation.index].recordRollback(System.nanoTime() - end);
+        } else {
+            commitTimed(invocation, end);
+        }
+    }
+
+    /**
+     * 롤백이나 커밋 중에 난 예외에 타깃이 던진 예외를 남긴다. 스프링의 TransactionAspectSupport 와 같이
+     * TransactionSystemException 이면 애플리케이션 예외로, 아니면 suppressed 예외로 남긴다.
+     */
+    static void keepApplicationException(Throwable completionEx, Throwable applicationEx) {
+        if (completionEx instanceof TransactionSystemException
+                && ((TransactionSystemException) completionEx).getApplicationException() == null) {
+            ((TransactionSystemException) completionEx).initApplicationException(applicationEx);
+        } else if (completionEx != applicationEx) {
+            completionEx.addSuppressed(applicationEx);
+        }
+    }
+
+    private void commitTimed(Invocation invocation, long start) {
+        transactionManager.commit(invocation.status);
+        metrics[invocation.index].recordCommit(System.nanoTime() - start);
+    }
+
+    /**
+     * 프록시 메소드 하나의 진행 중인 트랜잭션. begin() 이 만들어 commit() 이나 rollback() 에 넘긴다.
+     */
+    public static final class Invocation {
+        private final TransactionStatus status;
+        private final int index;
+        private final long bodyStart;
+
+        Invocation(TransactionStatus status, int index, long bodyStart) {
+            this.status = status;
+            this.index = index;
+            this.bodyStart = bodyStart;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package springbook.user.service;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 서비스 인터페이스를 직접 구현하는 트랜잭션 프록시 클래스를 바이트코드로 만든다.
+ * <p>만들어지는 클래스는 인터페이스의 메소드마다 아래와 같은 코드를 가진다. 인자를 배열로 담거나 리플렉션으로 호출하지 않는다.
+ * <pre>
+ * Invocation invocation = support.begin(index);
+ * try {
+ *     ret = target.method(args);
+ * } catch (Throwable e) {
+ *     support.rollback(invocation, e);
+ *     throw e;
+ * }
+ * support.commit(invocation);
+ * return ret;
+ * </pre>
+ * 트랜잭션 속성은 {@link TransactionProxySupport} 가 들고 있으므로 클래스는 인터페이스마다 한 번만 만들어 캐시한다.
+ * 캐시는 인터페이스 클래스에 붙여 두므로, 인터페이스의 클래스 로더가 내려가면 프록시 클래스도 함께 내려간다.
+ * equals, hashCode, toString 은 트랜잭션 없이 타깃에 넘긴다.
+ */
+class TxProxyClassGenerator {
+    private static final String SUPPORT = Type.getInternalName(TransactionProxySupport.class);
+    private static final String INVOCATION_DESCRIPTOR = Type.getDescriptor(TransactionProxySupport.Invocation.class);
+    private static final String OBJECT = "java/lang/Object";
+
+    private static final ClassValue<ProxyClass> proxyClasses = new ClassValue<ProxyClass>() {
+        @Override
+        protected ProxyClass computeValue(Class<?> serviceInterface) {
+            return generate(serviceInterface);
+        }
+    };
+
+    private TxProxyClassGenerator() {
+    }
+
+    static ProxyClass proxyClassFor(Class<?> serviceInterface) {
+        return proxyClasses.get(serviceInterface);
+    }
+
+    private static ProxyClass generate(Class<?> serviceInterface) {
+        if (!serviceInterface.isInterface() || !Modifier.isPublic(serviceInterface.getModifiers())) {
+            throw new IllegalArgumentException(serviceInterface.getName() + " 는 public 인터페이스가 아니라서 프록시 클래스를 만들 수 없습니다.");
+        }
+
+        ClassLoader parent = parentClassLoader(serviceInterface);
+        Method[] methods = proxiedMethods(serviceInterface);
+        String className = serviceInterface.getName() + "$$TxProxy";
+        if (className.startsWith("java.")) {
+            // java 패키지에는 클래스를 정의할 수 없다
+            className = TransactionProxySupport.class.getPackage().getName() + "." + className;
+        }
+        byte[] bytecode = generateBytecode(className.replace('.', '/'), serviceInterface, methods);
+
+        ProxyClassLoader classLoader = new ProxyClassLoader(parent);
+        Class<?> type = classLoader.define(className, bytecode);
+        try {
+            return new ProxyClass(type.getConstructor(serviceInterface, TransactionProxySupport.class), methods);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 프록시 클래스는 인터페이스와 TransactionProxySupport 를 모두 볼 수 있는 로더 아래에 정의해야 한다.
+     * JDK 인터페이스처럼 부트스트랩 로더가 올린 인터페이스는 로더가 null 이라 TransactionProxySupport 를 찾지 못하므로
+     * TransactionProxySupport 의 로더를 쓴다. 어느 쪽도 다른 쪽을 보지 못하면 만들 수 없다.
+     */
+    private static ClassLoader parentClassLoader(Class<?> serviceInterface) {
+        ClassLoader interfaceLoader = serviceInterface.getClassLoader();
+        if (isVisible(interfaceLoader, TransactionProxySupport.class)) return interfaceLoader;
+
+        ClassLoader supportLoader = TransactionProxySupport.class.getClassLoader();
+        if (isVisible(supportLoader, serviceInterface)) return supportLoader;
+
+        throw new IllegalArgumentException(serviceInterface.getName() + " 의 클래스 로더에서 "
+                + TransactionProxySupport.class.getName() + " 를 찾을 수 없어서 프록시 클래스를 만들 수 없습니다.");
+    }
+
+    private static boolean isVisible(ClassLoader classLoader, Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, classLoader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    // 같은 시그니처가 여러 상위 인터페이스에서 오면 하나만 남긴다. 번호가 매번 같도록 시그니처 순으로 늘어놓는다
+    private static Method[] proxiedMethods(Class<?> serviceInterface) {
+        Map<String, Method> methods = new TreeMap<>();
+        for (Method method : serviceInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || isObjectMethod(method)) continue;
+            methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+        }
+        return methods.values().toArray(new Method[0]);
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static byte[] generateBytecode(String className, Class<?> serviceInterface, Method[] methods) {
+        String interfaceName = Type.getInternalName(serviceInterface);
+        String interfaceDescriptor = Type.getDescriptor(serviceInterface);
+
+        // 프록시 코드에서 타입이 합쳐지는 곳은 catch 블록뿐이라 클래스를 로딩해서 공통 상위 타입을 찾을 필요가 없다
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return OBJECT;
+            }
+        };
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null, OBJECT, new String[]{interfaceName});
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "target", interfaceDescriptor, null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "support", "L" + SUPPORT + ";", null, null).visitEnd();
+
+        generateConstructor(cw, className, interfaceDescriptor);
+        for (int i = 0; i < methods.length; i++) {
+            generateMethod(cw, className, interfaceName, interfaceDescriptor, methods[i], i);
+        }
+        generateDelegate(cw, className, interfaceDescriptor, "equals", "(Ljava/lang/Object;)Z");
+        generateDelegate(cw, className, interfaceDescriptor, "hashCode", "()I");
+        generateDelegate(cw, className, interfaceDescriptor, "toString", "()Ljava/lang/String;");
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter cw, String className, String interfaceDescriptor) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + interfaceDescriptor + "L" + SUPPORT + ";)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, className, "target", interfaceDescriptor);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, className, "support", "L" + SUPPORT + ";");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateMethod(ClassWriter cw, String className, String interfaceName, String interfaceDescriptor,
+                                       Method method, int index) {
+        String descriptor = Type.getMethodDescriptor(method);
+        Type[] argumentTypes = Type.getArgumentTypes(method);
+        Type returnType = Type.getReturnType(method);
+
+        String[] exceptions = new String[method.getExceptionTypes().length];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = Type.getInternalName(method.getExceptionTypes()[i]);
+        }
+
+        int invocationSlot = 1;
+        for (Type argumentType : argumentTypes) {
+            invocationSlot += argumentType.getSize();
+        }
+        int resultSlot = invocationSlot + 1;
+        int exceptionSlot = resultSlot + returnType.getSize();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), descriptor, null, exceptions);
+        mv.visitCode();
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+
+        // Invocation invocation = support.begin(index);
+        loadSupport(mv, className);
+        pushInt(mv, index);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SUPPORT, "begin", "(I)" + INVOCATION_DESCRIPTOR, false);
+        mv.visitVarInsn(Opcodes.ASTORE, invocationSlot);
+
+        // ret = target.method(args);
+        mv.visitLabel(tryStart);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "target", interfaceDescriptor);
+        int slot = 1;
+        for (Type argumentType : argumentTypes) {
+            mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, interfaceName, method.getName(), descriptor, true);
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ISTORE), resultSlot);
+        }
+        mv.visitLabel(tryEnd);
+
+        // support.commit(invocation); return ret;
+        loadSupport(mv, className);
+        mv.visitVarInsn(Opcodes.ALOAD, invocationSlot);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SUPPORT, "commit", "(" + INVOCATION_DESCRIPTOR + ")V", false);
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ILOAD), resultSlot);
+        }
+        mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+        // catch (Throwable e) { support.rollback(invocation, e); throw e; }
+        mv.visitLabel(handler);
+        mv.visitVarInsn(Opcodes.ASTORE, exceptionSlot);
+        loadSupport(mv, className);
+        mv.visitVarInsn(Opcodes.ALOAD, invocationSlot);
+        mv.visitVarInsn(Opcodes.ALOAD, exceptionSlot);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SUPPORT, "rollback", "(" + INVOCATION_DESCRIPTOR + "Ljava/lang/Throwable;)V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, exceptionSlot);
+        mv.visitInsn(Opcodes.ATHROW);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateDelegate(ClassWriter cw, String className, String interfaceDescriptor, String name, String descriptor) {
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "target", interfaceDescriptor);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, i + 1);
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OBJECT, name, descriptor, false);
+        mv.visitInsn(Type.getReturnType(descriptor).getOpcode(Opcodes.IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void loadSupport(MethodVisitor mv, String className) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "support", "L" + SUPPORT + ";");
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * 만들어진 프록시 클래스와, 메소드 번호 순서대로 늘어놓은 인터페이스 메소드
+     */
+    static class ProxyClass {
+        private final Constructor<?> constructor;
+        private final Method[] methods;
+
+        ProxyClass(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+
+        Method[] getMethods() {
+            return methods.clone();
+        }
+
+        Object newInstance(Object target, TransactionProxySupport support) {
+            try {
+                return constructor.newInstance(target, support);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(constructor.getDeclaringClass().getName() + " 를 만들 수 없습니다.", e);
+            }
+        }
+    }
+
+    private static class ProxyClassLoader extends ClassLoader {
+        ProxyClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
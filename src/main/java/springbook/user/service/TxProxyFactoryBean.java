@@ -2,14 +2,23 @@ package springbook.user.service;
 
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import springbook.user.metrics.TransactionMetrics;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Properties;
 
 public class TxProxyFactoryBean implements FactoryBean<Object> {
     Object target;
     PlatformTransactionManager transactionManager;
     String pattern;
+    Properties transactionAttributes;
     Class<?> serviceInterface;
+    boolean generateProxyClass;
+    TransactionMetrics transactionMetrics;
+
+    private Object proxy;
 
     public void setTarget(Object target) {
         this.target = target;
@@ -23,17 +32,62 @@ public class TxProxyFactoryBean implements FactoryBean<Object> {
         this.pattern = pattern;
     }
 
+    /**
+     * 메소드 이름 패턴별 트랜잭션 속성. 지정하면 pattern 대신 이것을 쓴다.
+     */
+    public void setTransactionAttributes(Properties transactionAttributes) {
+        this.transactionAttributes = transactionAttributes;
+    }
+
     public void setServiceInterface(Class<?> serviceInterface) {
         this.serviceInterface = serviceInterface;
     }
 
+    /**
+     * true 면 JDK 다이내믹 프록시 대신 서비스 인터페이스를 직접 구현하는 클래스를 만들어 프록시로 쓴다.
+     * 호출할 때 인자 배열을 만들거나 리플렉션을 거치지 않는다.
+     */
+    public void setGenerateProxyClass(boolean generateProxyClass) {
+        this.generateProxyClass = generateProxyClass;
+    }
+
+    public void setTransactionMetrics(TransactionMetrics transactionMetrics) {
+        this.transactionMetrics = transactionMetrics;
+    }
+
     @Override
-    public Object getObject() throws Exception {
+    public synchronized Object getObject() throws Exception {
+        if (proxy == null) {
+            proxy = createProxy();
+        }
+        return proxy;
+    }
+
+    private Object createProxy() {
         TransactionHandler txHandler = new TransactionHandler();
         txHandler.setTarget(target);
         txHandler.setTransactionManager(transactionManager);
         txHandler.setPattern(pattern);
-        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{serviceInterface}, txHandler);
+        if (transactionAttributes != null) {
+            txHandler.setTransactionAttributes(transactionAttributes);
+        }
+        txHandler.setTransactionMetrics(transactionMetrics);
+
+        if (!generateProxyClass) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{serviceInterface}, txHandler);
+        }
+
+        TxProxyClassGenerator.ProxyClass proxyClass = TxProxyClassGenerator.proxyClassFor(serviceInterface);
+        Method[] methods = proxyClass.getMethods();
+        TransactionAttribute[] attributes = new TransactionAttribute[methods.length];
+        TransactionMetrics.MethodMetrics[] metrics = (transactionMetrics == null) ? null : new TransactionMetrics.MethodMetrics[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            attributes[i] = txHandler.getTransactionAttribute(methods[i]);
+            if (metrics != null && attributes[i] != null) {
+                metrics[i] = transactionMetrics.forMethod(methods[i]);
+            }
+        }
+        return proxyClass.newInstance(target, new TransactionProxySupport(transactionManager, attributes, metrics));
     }
 
     @Override
@@ -42,7 +96,6 @@ public class TxProxyFactoryBean implements FactoryBean<Object> {
     }
 
     public boolean isSingleton(){
-        return false;
+        return true;
     }
 }
-
@@ -0,0 +1,9 @@
+package springbook.user.service;
+
+public interface UpgradeCheckpoint {
+    String load();
+
+    void save(String lastId);
+
+    void clear();
+}
@@ -5,6 +5,7 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 import springbook.user.dao.UserDao;
@@ -19,6 +20,9 @@ public interface UserService {
     public void add(User user);
     void deleteAll();
     public void upgradeLevels();
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void upgradeLevelsInChunks();
+    public void upgradeLevelsInBulk();
     public void update(User user);
 
     @Transactional(readOnly = true)
@@ -3,34 +3,50 @@ package springbook.user.service;
 import org.springframework.mail.MailSender;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import springbook.user.dao.UserDao;
 import springbook.user.domain.Level;
 import springbook.user.domain.User;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
 public class UserServiceImpl implements UserService {
     public static final int MIN_LOGCOUNT_FOR_SILVER = 50;
     public static final int MIN_RECOMMEND_FOR_GOLD = 30;
+    public static final int DEFAULT_UPGRADE_CHUNK_SIZE = 1000;
 
     UserDao userDao;
 
     private DataSource dataSource;
 
-    /*private PlatformTransactionManager transactionManager;*/
+    private PlatformTransactionManager transactionManager;
 
     private MailSender mailSender;
 
+    private UpgradeCheckpoint upgradeCheckpoint = new MemoryUpgradeCheckpoint();
+
+    private int upgradeChunkSize = DEFAULT_UPGRADE_CHUNK_SIZE;
+
     public void setMailSender(MailSender mailSender) {
         this.mailSender = mailSender;
     }
 
-    /*public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
         this.transactionManager = transactionManager;
-    }*/
+    }
+
+    public void setUpgradeCheckpoint(UpgradeCheckpoint upgradeCheckpoint) {
+        this.upgradeCheckpoint = upgradeCheckpoint;
+    }
+
+    public void setUpgradeChunkSize(int upgradeChunkSize) {
+        this.upgradeChunkSize = upgradeChunkSize;
+    }
 
     public void setDataSource(DataSource dataSource) {
         this.dataSource = dataSource;
@@ -66,21 +82,88 @@ public class UserServiceImpl implements UserService {
     }
 
     public void upgradeLevels() {
-        List<User> users = userDao.getAll();
+        upgradeAll(userDao.getAll());
+    }
+
+    public void upgradeLevelsInChunks() {
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+        chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        String lastId = upgradeCheckpoint.load();
+        while (true) {
+            final String fromId = (lastId == null) ? "" : lastId;
+            List<User> chunk = chunkTransaction.execute(status -> upgradeChunk(fromId));
+            if (chunk.isEmpty()) break;
+
+            // 청크가 커밋된 뒤에만 체크포인트를 옮겨서, 실패하면 마지막으로 커밋된 청크 다음부터 다시 시작한다
+            lastId = chunk.get(chunk.size() - 1).getId();
+            upgradeCheckpoint.save(lastId);
+            if (chunk.size() < upgradeChunkSize) break;
+        }
+        upgradeCheckpoint.clear();
+    }
+
+    private List<User> upgradeChunk(String fromId) {
+        List<User> users = userDao.getAllAfter(fromId, upgradeChunkSize);
+        upgradeAll(users);
+        return users;
+    }
+
+    private void upgradeAll(List<User> users) {
+        List<User> upgraded = new ArrayList<>();
         for (User user : users) {
             if (canUpgradeLevel(user)) {
                 upgradeLevel(user);
+                upgraded.add(user);
+            }
+        }
+
+        userDao.updateAll(upgraded);
+        for (User user : upgraded) {
+            sendUpgradeMail(user);
+        }
+    }
+
+    public void upgradeLevelsInBulk() {
+        // Level.values() 는 GOLD, SILVER, BASIC 순서라 한 번에 두 단계가 올라가는 사용자가 생기지 않는다
+        for (Level level : Level.values()) {
+            if (level.nextLevel() == null) continue;
+
+            List<User> upgraded = userDao.upgradeLevels(level, minLoginFor(level), minRecommendFor(level));
+            for (User user : upgraded) {
+                sendUpgradeMail(user);
             }
         }
     }
 
+    // 레벨마다 업그레이드 기준은 한 가지다. 기준이 아닌 항목은 null 로 넘겨 조건에서 뺀다
+    private Integer minLoginFor(Level level) {
+        switch (level) {
+            case BASIC:
+                return MIN_LOGCOUNT_FOR_SILVER;
+            case SILVER:
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown Level : " + level);
+        }
+    }
+
+    private Integer minRecommendFor(Level level) {
+        switch (level) {
+            case BASIC:
+                return null;
+            case SILVER:
+                return MIN_RECOMMEND_FOR_GOLD;
+            default:
+                throw new IllegalArgumentException("Unknown Level : " + level);
+        }
+    }
+
     protected void upgradeLevel(User user) {
         user.upgradeLevel();
-        userDao.update(user);
-        sendUpgradeMail(user);
     }
 
-    private void sendUpgradeMail(User user) {
+    protected void sendUpgradeMail(User user) {
         SimpleMailMessage mailMessage = new SimpleMailMessage();
         mailMessage.setTo(user.getEamil());
         mailMessage.setFrom("useradmin@ksug.org");
@@ -1,8 +1,15 @@
 package springbook.user.sqlservice;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
 public class BaseSqlService implements SqlService {
+    public static final int DEFAULT_LOAD_CHUNK_SIZE = 500;
+
     protected SqlReader sqlReader;
     protected SqlRegistry sqlRegistry;
+    protected int loadChunkSize = DEFAULT_LOAD_CHUNK_SIZE;
 
     public void setSqlReader(SqlReader sqlReader) {
         this.sqlReader = sqlReader;
@@ -12,17 +19,72 @@ public class BaseSqlService implements SqlService {
         this.sqlRegistry = sqlRegistry;
     }
 
+    /**
+     * 레지스트리가 BulkSqlRegistry 일 때 한 번에 등록하는 SQL 수.
+     */
+    public void setLoadChunkSize(int loadChunkSize) {
+        if (loadChunkSize < 1) throw new IllegalArgumentException("loadChunkSize 는 1 이상이어야 합니다.");
+        this.loadChunkSize = loadChunkSize;
+    }
+
     public void loadSql() {
-        this.sqlReader.read(this.sqlRegistry);
+        if (this.sqlRegistry instanceof BulkSqlRegistry) {
+            // sqlmap 전체를 메모리에 모으지 않고 loadChunkSize 개씩 끊어서 등록한다
+            ChunkedSqlRegistry chunked = new ChunkedSqlRegistry((BulkSqlRegistry) this.sqlRegistry, loadChunkSize);
+            this.sqlReader.read(chunked);
+            chunked.flush();
+        } else {
+            this.sqlReader.read(this.sqlRegistry);
+        }
     }
 
 
     @Override
     public String getSql(String key) throws SqlRetrievalFailureException {
-        try {
-            return this.sqlRegistry.findSql(key);
-        } catch (SqlNotFoundException e) {
-            throw new SqlRetrievalFailureException(e);
+        return this.sqlRegistry.lookupSql(key)
+                .orElseThrow(() -> new SqlRetrievalFailureException(key + " 에 대한 SQL 을 찾을 수 없습니다."));
+    }
+
+    @Override
+    public SqlHandle getSqlHandle(String key) throws SqlRetrievalFailureException {
+        if (this.sqlRegistry instanceof SqlHandleRegistry) {
+            try {
+                return ((SqlHandleRegistry) this.sqlRegistry).findSqlHandle(key);
+            } catch (SqlNotFoundException e) {
+                throw new SqlRetrievalFailureException(e);
+            }
+        }
+
+        getSql(key);
+        return new LookupSqlHandle(this, key);
+    }
+
+    private static class ChunkedSqlRegistry implements SqlRegistry {
+        private final BulkSqlRegistry sqlRegistry;
+        private final int chunkSize;
+        private final Map<String, String> chunk = new LinkedHashMap<>();
+
+        ChunkedSqlRegistry(BulkSqlRegistry sqlRegistry, int chunkSize) {
+            this.sqlRegistry = sqlRegistry;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public void registerSql(String key, String sql) {
+            chunk.put(key, sql);
+            if (chunk.size() >= chunkSize) flush();
+        }
+
+        @Override
+        public Optional<String> lookupSql(String key) {
+            String sql = chunk.get(key);
+            return sql != null ? Optional.of(sql) : sqlRegistry.lookupSql(key);
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) return;
+            sqlRegistry.registerSql(new LinkedHashMap<>(chunk));
+            chunk.clear();
         }
     }
 }
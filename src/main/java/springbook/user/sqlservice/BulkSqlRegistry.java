@@ -0,0 +1,12 @@
+package springbook.user.sqlservice;
+
+import java.util.Map;
+
+/**
+ * 여러 SQL 을 한 번에 등록할 수 있는 레지스트리. BaseSqlService.loadSql 은 레지스트리가 이 인터페이스를 구현하면
+ * 읽은 SQL 을 정해진 개수씩 묶어서 등록한다.
+ * <p>registerSql(Map) 은 전부 반영하거나 하나도 반영하지 않아야 한다. SqlmapReloader 는 이것에 기대어 다시 읽은 내용을 한 번에 적용한다.
+ */
+public interface BulkSqlRegistry extends SqlRegistry {
+    void registerSql(Map<String, String> sqlmap);
+}
@@ -0,0 +1,23 @@
+package springbook.user.sqlservice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public class CollectingSqlRegistry implements SqlRegistry {
+    private final Map<String, String> sqlmap = new LinkedHashMap<>();
+
+    public Map<String, String> getSqlmap() {
+        return sqlmap;
+    }
+
+    @Override
+    public void registerSql(String key, String sql) {
+        sqlmap.put(key, sql);
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        return Optional.ofNullable(sqlmap.get(key));
+    }
+}
@@ -3,22 +3,25 @@ package springbook.user.sqlservice;
 import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ConcurrentHashMapRegistry implements UpdatableSqlRegistry {
     ConcurrentHashMap<String, String> sqlMap = new ConcurrentHashMap<>();
+    private SqlTextPool sqlTextPool;
+
+    public void setSqlTextPool(SqlTextPool sqlTextPool) {
+        this.sqlTextPool = sqlTextPool;
+    }
 
     @Override
-    public String findSql(String key) throws SqlNotFoundException {
-        String sql = sqlMap.get(key);
-        if (sql == null) {
-            throw new SqlNotFoundException(key + " 를 이용해서 SQL 을 찾을 수 없습니다.");
-        } else return sql;
+    public Optional<String> lookupSql(String key) {
+        return Optional.ofNullable(sqlMap.get(key));
     }
 
     @Override
     public void registerSql(String key, String sql) {
-        sqlMap.put(key, sql);
+        sqlMap.put(key, pooled(sql));
     }
 
     @Override
@@ -27,13 +30,23 @@ public class ConcurrentHashMapRegistry implements UpdatableSqlRegistry {
             throw new SqlUpdateFailureException(key + " 에 해당하는 SQL을 찾을 수 없습니다.");
         }
 
-        sqlMap.put(key, sql);
+        sqlMap.put(key, pooled(sql));
     }
 
     @Override
     public void updateSql(Map<String, String> sqlmap) throws SqlUpdateFailureException {
+        // 없는 키가 하나라도 있으면 아무것도 바꾸지 않도록 먼저 모두 확인한다
+        for (String key : sqlmap.keySet()) {
+            if (sqlMap.get(key) == null) {
+                throw new SqlUpdateFailureException(key + " 에 해당하는 SQL을 찾을 수 없습니다.");
+            }
+        }
         for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
             updateSql(entry.getKey(), entry.getValue());
         }
     }
+
+    private String pooled(String sql) {
+        return sqlTextPool == null ? sql : sqlTextPool.intern(sql);
+    }
 }
@@ -0,0 +1,61 @@
+package springbook.user.sqlservice;
+
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CopyOnWriteSqlRegistry implements UpdatableSqlRegistry, BulkSqlRegistry {
+    // 한 번 공개한 맵은 절대 수정하지 않는다. 변경은 복사본을 만들어 참조를 통째로 바꾸는 방식으로만 한다
+    private final AtomicReference<HashMap<String, String>> sqlMap = new AtomicReference<>(new HashMap<String, String>());
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        return Optional.ofNullable(sqlMap.get().get(key));
+    }
+
+    @Override
+    public void registerSql(String key, String sql) {
+        while (true) {
+            HashMap<String, String> current = sqlMap.get();
+            HashMap<String, String> next = new HashMap<>(current);
+            next.put(key, sql);
+            if (sqlMap.compareAndSet(current, next)) return;
+        }
+    }
+
+    @Override
+    public void registerSql(Map<String, String> sqlmap) {
+        while (true) {
+            HashMap<String, String> current = sqlMap.get();
+            HashMap<String, String> next = new HashMap<>(current);
+            next.putAll(sqlmap);
+            if (sqlMap.compareAndSet(current, next)) return;
+        }
+    }
+
+    @Override
+    public void updateSql(String key, String sql) throws SqlUpdateFailureException {
+        Map<String, String> sqlmap = new HashMap<>();
+        sqlmap.put(key, sql);
+        updateSql(sqlmap);
+    }
+
+    @Override
+    public void updateSql(Map<String, String> sqlmap) throws SqlUpdateFailureException {
+        while (true) {
+            HashMap<String, String> current = sqlMap.get();
+            for (String key : sqlmap.keySet()) {
+                if (!current.containsKey(key)) {
+                    throw new SqlUpdateFailureException(key + " 에 해당하는 SQL을 찾을 수 없습니다.");
+                }
+            }
+
+            HashMap<String, String> next = new HashMap<>(current);
+            next.putAll(sqlmap);
+            if (sqlMap.compareAndSet(current, next)) return;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package springbook.user.sqlservice;
+
+public class DuplicateSqlKeyException extends RuntimeException {
+    public DuplicateSqlKeyException(String message) {
+        super(message);
+    }
+}
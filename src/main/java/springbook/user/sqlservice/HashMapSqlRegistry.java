@@ -2,18 +2,21 @@ package springbook.user.sqlservice;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 public class HashMapSqlRegistry implements SqlRegistry {
     private Map<String, String> sqlMap = new HashMap<String, String>();
+    private SqlTextPool sqlTextPool;
 
-    public String findSql(String key) throws SqlNotFoundException {
-        String sql = sqlMap.get(key);
-        if (sql == null)
-            throw new SqlNotFoundException(key + "를 이용해서 SQL을 찾을 수 없습니다");
-        else return sql;
+    public void setSqlTextPool(SqlTextPool sqlTextPool) {
+        this.sqlTextPool = sqlTextPool;
+    }
+
+    public Optional<String> lookupSql(String key) {
+        return Optional.ofNullable(sqlMap.get(key));
     }
 
     public void registerSql(String key, String sql) {
-        sqlMap.put(key, sql);
+        sqlMap.put(key, sqlTextPool == null ? sql : sqlTextPool.intern(sql));
     }
 }
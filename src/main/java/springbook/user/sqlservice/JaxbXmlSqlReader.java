@@ -4,7 +4,6 @@ import springbook.user.dao.UserDao;
 import springbook.user.sqlservice.jaxb.SqlType;
 import springbook.user.sqlservice.jaxb.Sqlmap;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.InputStream;
@@ -20,10 +19,8 @@ public class JaxbXmlSqlReader implements SqlReader {
 
     @Override
     public void read(SqlRegistry sqlRegistry) {
-        String contextPath = Sqlmap.class.getPackage().getName();
         try {
-            JAXBContext context = JAXBContext.newInstance(contextPath);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
+            Unmarshaller unmarshaller = SqlmapJaxbContext.get().createUnmarshaller();
             InputStream is = UserDao.class.getResourceAsStream(sqlmapFile);
             Sqlmap sqlmap = (Sqlmap) unmarshaller.unmarshal(is);
 
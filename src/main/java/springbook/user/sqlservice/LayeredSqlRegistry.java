@@ -0,0 +1,77 @@
+package springbook.user.sqlservice;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 모든 테넌트가 공유하는 기본 레지스트리 위에 테넌트별로 바뀐 SQL 만 담은 오버레이를 얹는다.
+ * 조회는 현재 테넌트의 오버레이를 보고, 없으면 기본 레지스트리를 본다. 해시 조회 두 번이면 끝나므로 O(1) 이다.
+ * 메모리는 테넌트 수 x SQL 수가 아니라 오버라이드한 SQL 수만큼만 는다.
+ * <p>테넌트는 {@link SqlTenantContext} 에서 읽는다. 테넌트가 없는 스레드에서 registerSql 하면 기본 레지스트리에 들어가므로,
+ * BaseSqlService.loadSql 로 sqlmap 을 읽어 오면 그대로 공용 SQL 이 된다.
+ * <p>결과가 테넌트마다 다르므로 CachingUpdatableSqlRegistry 로 이 레지스트리를 감싸면 안 된다.
+ * 기본 레지스트리가 느리다면 기본 레지스트리 쪽을 감싼다.
+ */
+public class LayeredSqlRegistry implements SqlRegistry {
+    private SqlRegistry baseSqlRegistry = new ConcurrentHashMapRegistry();
+
+    private final Map<String, Map<String, String>> overlays = new ConcurrentHashMap<>();
+
+    public void setBaseSqlRegistry(SqlRegistry baseSqlRegistry) {
+        this.baseSqlRegistry = baseSqlRegistry;
+    }
+
+    @Override
+    public void registerSql(String key, String sql) {
+        String tenant = SqlTenantContext.getTenant();
+        if (tenant == null) {
+            baseSqlRegistry.registerSql(key, sql);
+        } else {
+            registerSql(tenant, key, sql);
+        }
+    }
+
+    public void registerSql(String tenant, String key, String sql) {
+        overlays.computeIfAbsent(tenant, t -> new ConcurrentHashMap<>()).put(key, sql);
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        return lookupSql(SqlTenantContext.getTenant(), key);
+    }
+
+    public Optional<String> lookupSql(String tenant, String key) {
+        if (tenant != null) {
+            Map<String, String> overlay = overlays.get(tenant);
+            if (overlay != null) {
+                String sql = overlay.get(key);
+                if (sql != null) return Optional.of(sql);
+            }
+        }
+        return baseSqlRegistry.lookupSql(key);
+    }
+
+    public void removeOverride(String tenant, String key) {
+        Map<String, String> overlay = overlays.get(tenant);
+        if (overlay != null) overlay.remove(key);
+    }
+
+    public void removeTenant(String tenant) {
+        overlays.remove(tenant);
+    }
+
+    public Map<String, String> getOverrides(String tenant) {
+        Map<String, String> overlay = overlays.get(tenant);
+        return overlay == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(overlay);
+    }
+
+    public int getOverrideCount() {
+        int count = 0;
+        for (Map<String, String> overlay : overlays.values()) {
+            count += overlay.size();
+        }
+        return count;
+    }
+}
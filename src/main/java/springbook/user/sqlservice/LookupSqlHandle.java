@@ -0,0 +1,21 @@
+package springbook.user.sqlservice;
+
+public class LookupSqlHandle implements SqlHandle {
+    private final SqlService sqlService;
+    private final String key;
+
+    public LookupSqlHandle(SqlService sqlService, String key) {
+        this.sqlService = sqlService;
+        this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String getSql() {
+        return sqlService.getSql(key);
+    }
+}
@@ -38,13 +38,14 @@ public class OxmSqlService implements SqlService {
     }
 
     public String getSql(String key) throws SqlRetrievalFailureException {
-        try {
-            return this.baseSqlService.getSql(key);
-        } catch (SqlNotFoundException e) {
-            throw new SqlRetrievalFailureException(e);
-        }
+        return this.baseSqlService.getSql(key);
+    }
+
+    public SqlHandle getSqlHandle(String key) throws SqlRetrievalFailureException {
+        return this.baseSqlService.getSqlHandle(key);
     }
 
+    // 주입받은 OXM Unmarshaller 로 문서 전체를 Sqlmap 객체로 바꾼 뒤 등록한다. 파일을 흘려 읽으려면 StaxXmlSqlReader 를 쓴다
     private class OxmSqlReader implements SqlReader {
         private Unmarshaller unmarshaller;
         private final static String DEFAULT_SQLMAP_FILE = "/sqlmap.xml";
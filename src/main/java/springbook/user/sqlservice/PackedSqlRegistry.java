@@ -0,0 +1,209 @@
+package springbook.user.sqlservice;
+
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 키와 SQL 을 String 대신 UTF-8 바이트로 하나의 배열(아레나)에 이어 붙여 저장한다.
+ * 내용이 같은 SQL 은 한 번만 저장하고 엔트리들이 같은 값 번호를 가리킨다.
+ * <p>엔트리마다 String, 해시맵 노드 같은 객체를 만들지 않아 힙을 적게 쓰는 대신,
+ * 조회할 때마다 SQL 을 String 으로 디코딩하므로 조회는 맵 기반 레지스트리보다 느리다.
+ * SqlHandle 처럼 조회 결과를 잡아 두는 쪽과 함께 쓰는 것을 전제로 한다.
+ * <p>SQL 을 바꾸면 이전 SQL 의 바이트는 아레나에 그대로 남는다. 수정이 드문 sqlmap 에서는 문제가 되지 않는다.
+ */
+public class PackedSqlRegistry implements UpdatableSqlRegistry {
+    private static final int EMPTY = -1;
+
+    private byte[] arena = new byte[4096];
+    private int arenaSize;
+
+    // 엔트리 번호 -> 키 위치, 키 길이, 값 번호
+    private int[] keyOffsets = new int[16];
+    private int[] keyLengths = new int[16];
+    private int[] valueIds = new int[16];
+    private int entryCount;
+
+    // 값 번호 -> SQL 위치, SQL 길이
+    private int[] valueOffsets = new int[16];
+    private int[] valueLengths = new int[16];
+    private int valueCount;
+
+    // 오픈 어드레싱 해시 테이블. 슬롯에는 엔트리 번호와 값 번호가 들어간다
+    private int[] keySlots = newSlots(32);
+    private int[] valueSlots = newSlots(32);
+
+    @Override
+    public synchronized Optional<String> lookupSql(String key) {
+        int entry = findEntry(utf8(key));
+        if (entry == EMPTY) return Optional.empty();
+
+        int valueId = valueIds[entry];
+        return Optional.of(new String(arena, valueOffsets[valueId], valueLengths[valueId], StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void registerSql(String key, String sql) {
+        byte[] keyBytes = utf8(key);
+        int valueId = internValue(utf8(sql));
+        int entry = findEntry(keyBytes);
+        if (entry != EMPTY) {
+            valueIds[entry] = valueId;
+        } else {
+            addEntry(keyBytes, valueId);
+        }
+    }
+
+    @Override
+    public synchronized void updateSql(String key, String sql) throws SqlUpdateFailureException {
+        int entry = findEntry(utf8(key));
+        if (entry == EMPTY) {
+            throw new SqlUpdateFailureException(key + " 에 해당하는 SQL을 찾을 수 없습니다.");
+        }
+        valueIds[entry] = internValue(utf8(sql));
+    }
+
+    @Override
+    public synchronized void updateSql(Map<String, String> sqlmap) throws SqlUpdateFailureException {
+        // 하나라도 없으면 아무것도 바꾸지 않는다
+        List<Integer> entries = new ArrayList<>(sqlmap.size());
+        for (String key : sqlmap.keySet()) {
+            int entry = findEntry(utf8(key));
+            if (entry == EMPTY) {
+                throw new SqlUpdateFailureException(key + " 에 해당하는 SQL을 찾을 수 없습니다.");
+            }
+            entries.add(entry);
+        }
+
+        int i = 0;
+        for (String sql : sqlmap.values()) {
+            valueIds[entries.get(i++)] = internValue(utf8(sql));
+        }
+    }
+
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    /**
+     * 서로 다른 SQL 의 개수
+     */
+    public synchronized int getDistinctSqlCount() {
+        return valueCount;
+    }
+
+    public synchronized int getArenaSize() {
+        return arenaSize;
+    }
+
+    private int findEntry(byte[] key) {
+        int mask = keySlots.length - 1;
+        for (int i = hash(key, 0, key.length) & mask; ; i = (i + 1) & mask) {
+            int entry = keySlots[i];
+            if (entry == EMPTY || equalsArena(key, keyOffsets[entry], keyLengths[entry])) return entry;
+        }
+    }
+
+    private void addEntry(byte[] key, int valueId) {
+        if (entryCount == keyOffsets.length) {
+            int capacity = entryCount * 2;
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            valueIds = Arrays.copyOf(valueIds, capacity);
+        }
+        int entry = entryCount++;
+        keyOffsets[entry] = append(key);
+        keyLengths[entry] = key.length;
+        valueIds[entry] = valueId;
+
+        if (entryCount * 4 > keySlots.length * 3) {
+            keySlots = rehash(keySlots.length * 2, entryCount, keyOffsets, keyLengths);
+        } else {
+            insert(keySlots, entry, hash(key, 0, key.length));
+        }
+    }
+
+    private int internValue(byte[] sql) {
+        int mask = valueSlots.length - 1;
+        int hash = hash(sql, 0, sql.length);
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int valueId = valueSlots[i];
+            if (valueId == EMPTY) break;
+            if (equalsArena(sql, valueOffsets[valueId], valueLengths[valueId])) return valueId;
+        }
+
+        if (valueCount == valueOffsets.length) {
+            int capacity = valueCount * 2;
+            valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+        }
+        int valueId = valueCount++;
+        valueOffsets[valueId] = append(sql);
+        valueLengths[valueId] = sql.length;
+
+        if (valueCount * 4 > valueSlots.length * 3) {
+            valueSlots = rehash(valueSlots.length * 2, valueCount, valueOffsets, valueLengths);
+        } else {
+            insert(valueSlots, valueId, hash);
+        }
+        return valueId;
+    }
+
+    private int append(byte[] bytes) {
+        if (arenaSize + bytes.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+        }
+        int offset = arenaSize;
+        System.arraycopy(bytes, 0, arena, offset, bytes.length);
+        arenaSize += bytes.length;
+        return offset;
+    }
+
+    private int[] rehash(int capacity, int count, int[] offsets, int[] lengths) {
+        int[] slots = newSlots(capacity);
+        for (int id = 0; id < count; id++) {
+            insert(slots, id, hash(arena, offsets[id], lengths[id]));
+        }
+        return slots;
+    }
+
+    private static void insert(int[] slots, int id, int hash) {
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = id;
+    }
+
+    private boolean equalsArena(byte[] bytes, int offset, int length) {
+        if (bytes.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != arena[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,25 @@
+package springbook.user.sqlservice;
+
+public class RefreshableSqlHandle implements SqlHandle {
+    private final String key;
+    private volatile String sql;
+
+    public RefreshableSqlHandle(String key, String sql) {
+        this.key = key;
+        this.sql = sql;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    public void refresh(String sql) {
+        this.sql = sql;
+    }
+}
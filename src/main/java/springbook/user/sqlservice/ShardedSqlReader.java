@@ -0,0 +1,159 @@
+package springbook.user.sqlservice;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 모듈별로 나눈 여러 sqlmap 파일을 포크/조인 풀에서 나눠 파싱한 뒤 하나로 합쳐 등록한다.
+ * 같은 키가 두 번 나오면 아무것도 등록하지 않고 {@link DuplicateSqlKeyException} 을 던진다.
+ */
+public class ShardedSqlReader implements SqlReader {
+    private ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver();
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private Resource[] sqlmaps;
+    private String[] sqlmapLocations = {"classpath:/sqlmap.xml"};
+
+    public void setResourcePatternResolver(ResourcePatternResolver resourcePatternResolver) {
+        this.resourcePatternResolver = resourcePatternResolver;
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public void setSqlmaps(Resource... sqlmaps) {
+        this.sqlmaps = sqlmaps;
+    }
+
+    /**
+     * 쉼표로 구분한 리소스 패턴. 예) classpath*:sqlmap/*.xml
+     */
+    public void setSqlmapLocations(String sqlmapLocations) {
+        this.sqlmapLocations = StringUtils.tokenizeToStringArray(sqlmapLocations, ",");
+    }
+
+    @Override
+    public void read(SqlRegistry sqlRegistry) {
+        Resource[] shards = resolveShards();
+
+        List<Shard> parsed = shards.length == 1
+                ? Arrays.asList(parse(shards[0]))
+                : forkJoinPool.invoke(new ParseTask(shards, 0, shards.length));
+
+        Map<String, Shard> owners = new LinkedHashMap<>();
+        for (Shard shard : parsed) {
+            for (String key : shard.sqlmap.keySet()) {
+                Shard owner = owners.putIfAbsent(key, shard);
+                if (owner != null) {
+                    throw new DuplicateSqlKeyException(key + " 키가 " + owner.resource.getDescription()
+                            + "와 " + shard.resource.getDescription() + "에 함께 있습니다.");
+                }
+            }
+        }
+
+        for (Shard shard : parsed) {
+            for (Map.Entry<String, String> entry : shard.sqlmap.entrySet()) {
+                sqlRegistry.registerSql(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 등록 순서가 매번 같도록 URL 순으로 정렬한다.
+     */
+    private Resource[] resolveShards() {
+        if (sqlmaps != null) {
+            if (sqlmaps.length == 0) {
+                throw new IllegalArgumentException("읽을 sqlmap 이 지정되지 않았습니다.");
+            }
+            return sqlmaps;
+        }
+
+        List<Resource> resources = new ArrayList<>();
+        for (String location : sqlmapLocations) {
+            try {
+                for (Resource resource : resourcePatternResolver.getResources(location)) {
+                    if (resource.exists()) resources.add(resource);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(location + "을 가져올 수 없습니다.", e);
+            }
+        }
+        if (resources.isEmpty()) {
+            throw new IllegalArgumentException(Arrays.toString(sqlmapLocations) + "에 맞는 sqlmap 이 없습니다.");
+        }
+        resources.sort(Comparator.comparing(Resource::getDescription));
+        return resources.toArray(new Resource[0]);
+    }
+
+    private static Shard parse(Resource resource) {
+        StaxXmlSqlReader sqlReader = new StaxXmlSqlReader();
+        sqlReader.setSqlmap(resource);
+        Shard shard = new Shard(resource);
+        sqlReader.read(shard);
+        return shard;
+    }
+
+    private static class Shard implements SqlRegistry {
+        final Resource resource;
+        final Map<String, String> sqlmap = new LinkedHashMap<>();
+
+        Shard(Resource resource) {
+            this.resource = resource;
+        }
+
+        @Override
+        public void registerSql(String key, String sql) {
+            if (sqlmap.putIfAbsent(key, sql) != null) {
+                throw new DuplicateSqlKeyException(key + " 키가 " + resource.getDescription() + "에 두 번 있습니다.");
+            }
+        }
+
+        @Override
+        public Optional<String> lookupSql(String key) {
+            return Optional.ofNullable(sqlmap.get(key));
+        }
+    }
+
+    private static class ParseTask extends RecursiveTask<List<Shard>> {
+        private final Resource[] shards;
+        private final int from;
+        private final int to;
+
+        ParseTask(Resource[] shards, int from, int to) {
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Shard> compute() {
+            if (to - from <= 1) {
+                List<Shard> parsed = new ArrayList<>(1);
+                if (to > from) parsed.add(parse(shards[from]));
+                return parsed;
+            }
+
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(shards, from, mid);
+            left.fork();
+            List<Shard> parsed = new ParseTask(shards, mid, to).compute();
+            List<Shard> merged = left.join();
+            merged.addAll(parsed);
+            return merged;
+        }
+    }
+}
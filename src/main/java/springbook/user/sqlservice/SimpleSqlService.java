@@ -18,4 +18,10 @@ public class SimpleSqlService implements SqlService{
             return sql;
         }
     }
+
+    @Override
+    public SqlHandle getSqlHandle(String key) throws SqlRetrievalFailureException {
+        getSql(key);
+        return new LookupSqlHandle(this, key);
+    }
 }
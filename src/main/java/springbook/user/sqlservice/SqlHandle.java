@@ -0,0 +1,7 @@
+package springbook.user.sqlservice;
+
+public interface SqlHandle {
+    String getKey();
+
+    String getSql();
+}
@@ -0,0 +1,5 @@
+package springbook.user.sqlservice;
+
+public interface SqlHandleRegistry extends SqlRegistry {
+    SqlHandle findSqlHandle(String key) throws SqlNotFoundException;
+}
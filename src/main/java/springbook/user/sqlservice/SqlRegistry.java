@@ -1,7 +1,17 @@
 package springbook.user.sqlservice;
 
+import java.util.Optional;
+
 public interface SqlRegistry {
     void registerSql(String key, String sql);
 
-    String findSql(String key) throws SqlNotFoundException;
+    /**
+     * 키가 없으면 예외 대신 빈 Optional 을 돌려준다.
+     * 테넌트 오버라이드 -> 기본값처럼 없는 게 흔한 조회에서 예외와 스택 트레이스 비용을 들이지 않으려고 쓴다.
+     */
+    Optional<String> lookupSql(String key);
+
+    default String findSql(String key) throws SqlNotFoundException {
+        return lookupSql(key).orElseThrow(() -> new SqlNotFoundException(key + "를 이용해서 SQL을 찾을 수 없습니다"));
+    }
 }
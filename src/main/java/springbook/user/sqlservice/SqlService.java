@@ -2,4 +2,6 @@ package springbook.user.sqlservice;
 
 public interface SqlService {
         String getSql(String key) throws SqlRetrievalFailureException;
+
+        SqlHandle getSqlHandle(String key) throws SqlRetrievalFailureException;
 }
@@ -0,0 +1,21 @@
+package springbook.user.sqlservice;
+
+/**
+ * 현재 스레드가 어느 테넌트의 SQL 을 써야 하는지 담아 둔다. {@link LayeredSqlRegistry} 가 읽는다.
+ * 요청을 처리하는 쪽에서 setTenant 후 finally 에서 clear 해야 스레드 풀에 테넌트가 남지 않는다.
+ */
+public abstract class SqlTenantContext {
+    private static final ThreadLocal<String> tenant = new ThreadLocal<>();
+
+    public static void setTenant(String tenantId) {
+        tenant.set(tenantId);
+    }
+
+    public static String getTenant() {
+        return tenant.get();
+    }
+
+    public static void clear() {
+        tenant.remove();
+    }
+}
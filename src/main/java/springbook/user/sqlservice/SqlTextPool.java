@@ -0,0 +1,21 @@
+package springbook.user.sqlservice;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 내용이 같은 SQL 문자열을 하나의 인스턴스로 모은다.
+ * 여러 레지스트리가 같은 풀을 쓰면 sqlmap 이나 테넌트를 넘어 중복된 SQL 도 한 번만 저장된다.
+ * String.intern() 과 달리 풀의 수명을 레지스트리와 같게 가져갈 수 있다.
+ */
+public class SqlTextPool {
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+
+    public String intern(String sql) {
+        String pooled = pool.putIfAbsent(sql, sql);
+        return pooled != null ? pooled : sql;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
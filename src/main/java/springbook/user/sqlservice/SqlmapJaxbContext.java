@@ -0,0 +1,24 @@
+package springbook.user.sqlservice;
+
+import springbook.user.sqlservice.jaxb.Sqlmap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+/**
+ * sqlmap 을 JAXB 로 읽는 클래스들이 함께 쓰는 JAXBContext.
+ * JAXBContext 는 만드는 비용이 크고 스레드 안전하므로 한 번만 만들어 공유한다.
+ */
+final class SqlmapJaxbContext {
+    private static JAXBContext jaxbContext;
+
+    private SqlmapJaxbContext() {
+    }
+
+    static synchronized JAXBContext get() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(Sqlmap.class.getPackage().getName());
+        }
+        return jaxbContext;
+    }
+}
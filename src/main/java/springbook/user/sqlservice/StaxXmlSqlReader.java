@@ -0,0 +1,52 @@
+package springbook.user.sqlservice;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import springbook.user.dao.UserDao;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StaxXmlSqlReader implements SqlReader {
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private Resource sqlmap = new ClassPathResource("/sqlmap.xml", UserDao.class);
+
+    public void setSqlmap(Resource sqlmap) {
+        this.sqlmap = sqlmap;
+    }
+
+    @Override
+    public void read(SqlRegistry sqlRegistry) {
+        try (InputStream is = sqlmap.getInputStream()) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "sql".equals(reader.getLocalName())) {
+                        String key = reader.getAttributeValue(null, "key");
+                        if (key == null) {
+                            throw new IllegalArgumentException(sqlmap.getFilename() + "에 key 가 없는 sql 이 있습니다.");
+                        }
+                        sqlRegistry.registerSql(key, reader.getElementText());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new IllegalArgumentException(sqlmap.getFilename() + "을 가져올 수 없습니다.", e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -4,15 +4,16 @@ import springbook.user.dao.UserDao;
 import springbook.user.sqlservice.jaxb.SqlType;
 import springbook.user.sqlservice.jaxb.Sqlmap;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 public class XmlSqlService implements SqlService, SqlRegistry, SqlReader {
     private Map<String, String> sqlMap = new HashMap<String, String>();
+    private SqlTextPool sqlTextPool;
     private String sqlmapFile;
 
     private SqlReader sqlReader;
@@ -26,6 +27,10 @@ public class XmlSqlService implements SqlService, SqlRegistry, SqlReader {
         this.sqlRegistry = sqlRegistry;
     }
 
+    public void setSqlTextPool(SqlTextPool sqlTextPool) {
+        this.sqlTextPool = sqlTextPool;
+    }
+
     public XmlSqlService() {
         String contextPath = Sqlmap.class.getPackage().getName();
     }
@@ -40,31 +45,30 @@ public class XmlSqlService implements SqlService, SqlRegistry, SqlReader {
 
     @Override
     public String getSql(String key) throws SqlRetrievalFailureException {
-        try {
-            return this.sqlRegistry.findSql(key);
-        } catch (SqlNotFoundException e) {
-            throw new SqlRetrievalFailureException(e);
-        }
+        return this.sqlRegistry.lookupSql(key)
+                .orElseThrow(() -> new SqlRetrievalFailureException(key + " 에 대한 SQL 을 찾을 수 없습니다."));
     }
 
     @Override
-    public String findSql(String key) throws SqlNotFoundException {
-        String sql = sqlMap.get(key);
-        if (sql == null) throw new SqlNotFoundException(key + "에 대한 SQL 을 찾을 수 없습니다");
-        else return sql;
+    public SqlHandle getSqlHandle(String key) throws SqlRetrievalFailureException {
+        getSql(key);
+        return new LookupSqlHandle(this, key);
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        return Optional.ofNullable(sqlMap.get(key));
     }
 
     @Override
     public void registerSql(String key, String sql) {
-        sqlMap.put(key, sql);
+        sqlMap.put(key, sqlTextPool == null ? sql : sqlTextPool.intern(sql));
     }
 
     @Override
     public void read(SqlRegistry sqlRegistry) {
-        String contextPath = Sqlmap.class.getPackage().getName();
         try {
-            JAXBContext context = JAXBContext.newInstance(contextPath);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
+            Unmarshaller unmarshaller = SqlmapJaxbContext.get().createUnmarshaller();
             InputStream is = UserDao.class.getResourceAsStream(sqlmapFile);
             Sqlmap sqlmap = (Sqlmap) unmarshaller.unmarshal(is);
 
@@ -0,0 +1,64 @@
+package springbook.user.sqlservice.compiled;
+
+import org.springframework.core.io.Resource;
+import springbook.user.sqlservice.SqlReader;
+import springbook.user.sqlservice.SqlRegistry;
+import springbook.user.sqlservice.StaxXmlSqlReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link SqlmapCompiler} 가 만든 파일을 XML 파싱 없이 읽어 등록한다.
+ * 컴파일된 파일이 없거나, 원본 sqlmap 과 체크섬이 다르거나, 깨져 있으면 XML 리더로 대신 읽는다.
+ */
+public class CompiledSqlReader implements SqlReader {
+    private Resource compiledSqlmap;
+    private Resource sqlmap;
+    private SqlReader fallbackSqlReader;
+
+    public void setCompiledSqlmap(Resource compiledSqlmap) {
+        this.compiledSqlmap = compiledSqlmap;
+    }
+
+    public void setSqlmap(Resource sqlmap) {
+        this.sqlmap = sqlmap;
+    }
+
+    public void setFallbackSqlReader(SqlReader fallbackSqlReader) {
+        this.fallbackSqlReader = fallbackSqlReader;
+    }
+
+    @Override
+    public void read(SqlRegistry sqlRegistry) {
+        long checksum = checksum();
+        ByteBuffer buffer = SqlmapBinaryFormat.mapIfCurrent(compiledSqlmap, checksum);
+        if (buffer == null) {
+            fallbackSqlReader().read(sqlRegistry);
+            return;
+        }
+
+        int count = SqlmapBinaryFormat.readHeader(buffer, checksum);
+        for (int i = 0; i < count; i++) {
+            String key = SqlmapBinaryFormat.readString(buffer);
+            sqlRegistry.registerSql(key, SqlmapBinaryFormat.readString(buffer));
+        }
+    }
+
+    private long checksum() {
+        try {
+            return SqlmapBinaryFormat.checksum(sqlmap);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(sqlmap.getFilename() + "을 가져올 수 없습니다.", e);
+        }
+    }
+
+    private SqlReader fallbackSqlReader() {
+        if (fallbackSqlReader == null) {
+            StaxXmlSqlReader xmlSqlReader = new StaxXmlSqlReader();
+            xmlSqlReader.setSqlmap(sqlmap);
+            fallbackSqlReader = xmlSqlReader;
+        }
+        return fallbackSqlReader;
+    }
+}
@@ -0,0 +1,120 @@
+package springbook.user.sqlservice.compiled;
+
+import org.springframework.core.io.Resource;
+import springbook.user.sqlservice.SqlReader;
+import springbook.user.sqlservice.SqlRegistry;
+import springbook.user.sqlservice.StaxXmlSqlReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 컴파일된 sqlmap 을 메모리 매핑해 두고 시작할 때는 키 -> SQL 위치 인덱스만 만든다.
+ * SQL 문자열은 처음 조회될 때 찾을 때 디코딩해서 캐시한다.
+ * <p>XmlSqlService 처럼 리더와 레지스트리를 겸하므로 BaseSqlService 의 sqlReader, sqlRegistry 에 함께 넣으면 된다.
+ * 컴파일된 파일을 쓸 수 없으면 XML 리더로 모든 SQL 을 캐시에 바로 채운다.
+ */
+public class MappedSqlRegistry implements SqlRegistry, SqlReader {
+    private Resource compiledSqlmap;
+    private Resource sqlmap;
+    private SqlReader fallbackSqlReader;
+
+    private volatile ByteBuffer buffer;
+    private volatile Map<String, Integer> offsets = Collections.emptyMap();
+    private final Map<String, String> sqlCache = new ConcurrentHashMap<>();
+
+    public void setCompiledSqlmap(Resource compiledSqlmap) {
+        this.compiledSqlmap = compiledSqlmap;
+    }
+
+    public void setSqlmap(Resource sqlmap) {
+        this.sqlmap = sqlmap;
+    }
+
+    public void setFallbackSqlReader(SqlReader fallbackSqlReader) {
+        this.fallbackSqlReader = fallbackSqlReader;
+    }
+
+    @Override
+    public void read(SqlRegistry sqlRegistry) {
+        if (!loadIndex()) {
+            fallbackSqlReader().read(sqlRegistry);
+            return;
+        }
+        if (sqlRegistry == this) return;
+
+        for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+            sqlRegistry.registerSql(entry.getKey(), SqlmapBinaryFormat.readString(buffer, entry.getValue()));
+        }
+    }
+
+    private synchronized boolean loadIndex() {
+        long checksum = checksum();
+        ByteBuffer buffer = SqlmapBinaryFormat.mapIfCurrent(compiledSqlmap, checksum);
+        if (buffer == null) return false;
+
+        int count = SqlmapBinaryFormat.readHeader(buffer, checksum);
+        Map<String, Integer> offsets = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            String key = SqlmapBinaryFormat.readString(buffer);
+            offsets.put(key, buffer.position());
+            SqlmapBinaryFormat.skipString(buffer);
+        }
+
+        this.buffer = buffer;
+        this.offsets = offsets;
+        return true;
+    }
+
+    @Override
+    public void registerSql(String key, String sql) {
+        sqlCache.put(key, sql);
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        String sql = sqlCache.get(key);
+        if (sql != null) return Optional.of(sql);
+
+        Integer offset = offsets.get(key);
+        if (offset == null) return Optional.empty();
+
+        // 동시에 처음 찾으면 같은 문자열을 두 번 디코딩할 수 있지만, 먼저 들어간 값만 남는다
+        sql = SqlmapBinaryFormat.readString(buffer, offset);
+        String previous = sqlCache.putIfAbsent(key, sql);
+        return Optional.of(previous != null ? previous : sql);
+    }
+
+    /**
+     * 문자열로 캐시에 올라간 SQL 개수. 인덱스 크기와 비교하면 지연 로딩이 얼마나 아꼈는지 볼 수 있다.
+     */
+    public int getDecodedCount() {
+        return sqlCache.size();
+    }
+
+    public int getIndexedCount() {
+        return offsets.size();
+    }
+
+    private long checksum() {
+        try {
+            return SqlmapBinaryFormat.checksum(sqlmap);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(sqlmap.getFilename() + "을 가져올 수 없습니다.", e);
+        }
+    }
+
+    private SqlReader fallbackSqlReader() {
+        if (fallbackSqlReader == null) {
+            StaxXmlSqlReader xmlSqlReader = new StaxXmlSqlReader();
+            xmlSqlReader.setSqlmap(sqlmap);
+            fallbackSqlReader = xmlSqlReader;
+        }
+        return fallbackSqlReader;
+    }
+}
@@ -0,0 +1,136 @@
+package springbook.user.sqlservice.compiled;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 컴파일된 sqlmap 파일의 형식.
+ * <pre>
+ * int   MAGIC
+ * int   VERSION
+ * long  원본 sqlmap.xml 의 CRC32
+ * int   엔트리 수
+ * 엔트리 * 수 : int 키 길이, 키(UTF-8), int SQL 길이, SQL(UTF-8)
+ * </pre>
+ * 키와 SQL 이 길이 접두어로 나란히 있으므로 SQL 을 디코딩하지 않고 건너뛸 수 있다.
+ */
+public abstract class SqlmapBinaryFormat {
+    public static final int MAGIC = 0x53514C43; // "SQLC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    public static void write(Map<String, String> sqlmap, long sourceChecksum, OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceChecksum);
+        out.writeInt(sqlmap.size());
+        for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        out.flush();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 파일이면 읽기 전용으로 메모리 매핑하고, jar 안의 리소스처럼 파일이 아니면 바이트를 읽어 감싼다.
+     */
+    public static ByteBuffer map(Resource compiled) throws IOException {
+        if (compiled.isFile()) {
+            try (FileChannel channel = FileChannel.open(compiled.getFile().toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        try (InputStream is = compiled.getInputStream()) {
+            return ByteBuffer.wrap(StreamUtils.copyToByteArray(is));
+        }
+    }
+
+    /**
+     * 컴파일된 파일을 쓸 수 있으면 헤더 앞에 위치한 버퍼를, 없거나 낡았거나 깨졌으면 null 을 돌려준다.
+     * 등록을 시작한 뒤에 실패하지 않도록 엔트리 끝까지 한 번 훑어 본다.
+     */
+    public static ByteBuffer mapIfCurrent(Resource compiled, long sourceChecksum) {
+        if (compiled == null || !compiled.exists()) return null;
+        try {
+            ByteBuffer buffer = map(compiled);
+            ByteBuffer probe = buffer.duplicate();
+            int count = readHeader(probe, sourceChecksum);
+            for (int i = 0; i < count * 2; i++) {
+                skipString(probe);
+            }
+            return buffer;
+        } catch (IOException | StaleSqlmapException | BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 헤더를 검사하고 엔트리 수를 돌려준다. 버퍼의 위치는 첫 엔트리로 옮겨진다.
+     * 형식이 다르거나 원본과 체크섬이 맞지 않으면 {@link StaleSqlmapException} 을 던진다.
+     */
+    public static int readHeader(ByteBuffer buffer, long sourceChecksum) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new StaleSqlmapException("컴파일된 sqlmap 형식이 아닙니다.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new StaleSqlmapException("지원하지 않는 컴파일된 sqlmap 버전입니다: " + version);
+        }
+        if (buffer.getLong() != sourceChecksum) {
+            throw new StaleSqlmapException("컴파일된 sqlmap 이 원본 sqlmap 과 다릅니다.");
+        }
+        return buffer.getInt();
+    }
+
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 버퍼의 위치를 바꾸지 않고 offset 에 있는 문자열을 읽는다. 여러 스레드가 같은 버퍼에서 읽어도 된다.
+     */
+    public static String readString(ByteBuffer buffer, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        return readString(view);
+    }
+
+    public static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    public static long checksum(Resource source) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        try (InputStream is = source.getInputStream()) {
+            int read;
+            while ((read = is.read(chunk)) != -1) {
+                crc.update(chunk, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,41 @@
+package springbook.user.sqlservice.compiled;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import springbook.user.sqlservice.CollectingSqlRegistry;
+import springbook.user.sqlservice.StaxXmlSqlReader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 빌드 시점에 sqlmap.xml 을 {@link SqlmapBinaryFormat} 파일로 컴파일한다.
+ * <p>사용법: {@code SqlmapCompiler <sqlmap.xml> <출력 파일>}
+ */
+public class SqlmapCompiler {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: SqlmapCompiler <sqlmap.xml> <output>");
+            System.exit(1);
+        }
+        compile(new FileSystemResource(args[0]), new File(args[1]));
+    }
+
+    public static void compile(Resource source, File output) throws IOException {
+        StaxXmlSqlReader sqlReader = new StaxXmlSqlReader();
+        sqlReader.setSqlmap(source);
+        CollectingSqlRegistry sqlRegistry = new CollectingSqlRegistry();
+        sqlReader.read(sqlRegistry);
+
+        File dir = output.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException(dir + " 디렉토리를 만들 수 없습니다.");
+        }
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(output))) {
+            SqlmapBinaryFormat.write(sqlRegistry.getSqlmap(), SqlmapBinaryFormat.checksum(source), os);
+        }
+    }
+}
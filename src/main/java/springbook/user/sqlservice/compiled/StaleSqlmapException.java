@@ -0,0 +1,7 @@
+package springbook.user.sqlservice.compiled;
+
+public class StaleSqlmapException extends RuntimeException {
+    public StaleSqlmapException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,103 @@
+package springbook.user.sqlservice.updatable;
+
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+import springbook.user.sqlservice.BulkSqlRegistry;
+import springbook.user.sqlservice.RefreshableSqlHandle;
+import springbook.user.sqlservice.SqlHandle;
+import springbook.user.sqlservice.SqlHandleRegistry;
+import springbook.user.sqlservice.SqlNotFoundException;
+import springbook.user.sqlservice.SqlUpdateFailureException;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CachingUpdatableSqlRegistry implements UpdatableSqlRegistry, SqlHandleRegistry, BulkSqlRegistry {
+    private UpdatableSqlRegistry sqlRegistry;
+
+    // 한 번 내어준 핸들은 캐시에서 지우지 않고 값만 갱신해서, 핸들을 들고 있는 DAO 도 변경을 바로 보게 한다
+    private final Map<String, RefreshableSqlHandle> handles = new ConcurrentHashMap<>();
+
+    public void setSqlRegistry(UpdatableSqlRegistry sqlRegistry) {
+        this.sqlRegistry = sqlRegistry;
+    }
+
+    @Override
+    public synchronized void registerSql(String key, String sql) {
+        sqlRegistry.registerSql(key, sql);
+
+        RefreshableSqlHandle handle = handles.get(key);
+        if (handle != null) {
+            sqlRegistry.lookupSql(key).ifPresent(handle::refresh);
+        }
+    }
+
+    @Override
+    public synchronized void registerSql(Map<String, String> sqlmap) {
+        if (sqlRegistry instanceof BulkSqlRegistry) {
+            ((BulkSqlRegistry) sqlRegistry).registerSql(sqlmap);
+        } else {
+            for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+                sqlRegistry.registerSql(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+            RefreshableSqlHandle handle = handles.get(entry.getKey());
+            if (handle != null) handle.refresh(entry.getValue());
+        }
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        return lookupSqlHandle(key).map(SqlHandle::getSql);
+    }
+
+    @Override
+    public SqlHandle findSqlHandle(String key) throws SqlNotFoundException {
+        return lookupSqlHandle(key).orElseThrow(() -> new SqlNotFoundException(key + "를 이용해서 SQL을 찾을 수 없습니다"));
+    }
+
+    private Optional<RefreshableSqlHandle> lookupSqlHandle(String key) {
+        RefreshableSqlHandle handle = handles.get(key);
+        if (handle != null) return Optional.of(handle);
+
+        return load(key);
+    }
+
+    // 캐시를 채우는 것과 갱신하는 것을 같은 락으로 묶어서, 갱신 전에 읽은 SQL 이 캐시에 남지 않도록 한다
+    // 없는 키는 캐시하지 않는다. 나중에 registerSql 로 추가될 수 있기 때문이다
+    private synchronized Optional<RefreshableSqlHandle> load(String key) {
+        RefreshableSqlHandle handle = handles.get(key);
+        if (handle != null) return Optional.of(handle);
+
+        return sqlRegistry.lookupSql(key).map(sql -> {
+            RefreshableSqlHandle loaded = new RefreshableSqlHandle(key, sql);
+            handles.put(key, loaded);
+            return loaded;
+        });
+    }
+
+    @Override
+    public synchronized void updateSql(String key, String sql) throws SqlUpdateFailureException {
+        sqlRegistry.updateSql(key, sql);
+        refresh(key, sql);
+    }
+
+    @Override
+    public synchronized void updateSql(Map<String, String> sqlmap) throws SqlUpdateFailureException {
+        sqlRegistry.updateSql(sqlmap);
+        for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+            refresh(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void refresh(String key, String sql) {
+        RefreshableSqlHandle handle = handles.get(key);
+        if (handle != null) {
+            handle.refresh(sql);
+        } else {
+            handles.put(key, new RefreshableSqlHandle(key, sql));
+        }
+    }
+}
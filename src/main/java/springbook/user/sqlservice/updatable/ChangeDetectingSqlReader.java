@@ -0,0 +1,107 @@
+package springbook.user.sqlservice.updatable;
+
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import springbook.user.sqlservice.CollectingSqlRegistry;
+import springbook.user.sqlservice.SqlReader;
+import springbook.user.sqlservice.SqlRegistry;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 파일로 저장되는 SQLMAP 테이블과 함께 쓰는 SqlReader 데코레이터.
+ * 원본 sqlmap 의 내용 해시를 SQLMAP_SOURCE 에 적어 두고, 다음 기동 때 해시가 같으면 다시 읽지 않는다.
+ * 해시가 다르면 감싼 리더로 다시 읽은 내용을 SQLMAP 테이블에 반영하고, 원본에서 빠진 키를 지우고, 해시를 바꾸는 것을
+ * 한 트랜잭션으로 처리한다. 도중에 실패하면 이전 내용과 해시가 그대로 남아서 다음 기동 때 다시 읽는다.
+ * 읽기를 건너뛰는 경우와 마찬가지로 read() 에 넘어온 레지스트리에는 직접 등록하지 않으므로,
+ * 레지스트리는 같은 DataSource 의 SQLMAP 테이블을 읽는 것이어야 한다.
+ * 실행 중에 updateSql 로 바꾼 SQL 은 원본이 바뀌지 않는 한 재기동 후에도 그대로 남는다.
+ */
+public class ChangeDetectingSqlReader implements SqlReader {
+    private SqlReader sqlReader;
+    private Resource[] sqlmaps;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private EmbeddedDbSqlRegistry store;
+
+    private volatile boolean lastReadSkipped;
+
+    public void setSqlReader(SqlReader sqlReader) {
+        this.sqlReader = sqlReader;
+    }
+
+    public void setSqlmaps(Resource... sqlmaps) {
+        this.sqlmaps = sqlmaps;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // 같은 DataSource 를 쓰므로 store 의 트랜잭션은 아래 transactionTemplate 의 트랜잭션에 참여한다
+        this.store = new EmbeddedDbSqlRegistry();
+        this.store.setDataSource(dataSource);
+    }
+
+    @Override
+    public void read(SqlRegistry sqlRegistry) {
+        String hash = sourceHash();
+        List<String> stored = jdbc.queryForList("select hash_ from sqlmap_source where id_ = 1", String.class);
+        if (!stored.isEmpty() && stored.get(0).equals(hash)) {
+            lastReadSkipped = true;
+            return;
+        }
+
+        CollectingSqlRegistry collected = new CollectingSqlRegistry();
+        sqlReader.read(collected);
+        Map<String, String> sqlmap = collected.getSqlmap();
+
+        transactionTemplate.execute(status -> {
+            store.registerSql(sqlmap);
+            deleteRemovedKeys(sqlmap);
+            if (jdbc.update("update sqlmap_source set hash_ = ? where id_ = 1", hash) == 0) {
+                jdbc.update("insert into sqlmap_source(id_, hash_) values(1, ?)", hash);
+            }
+            return null;
+        });
+        lastReadSkipped = false;
+    }
+
+    private void deleteRemovedKeys(Map<String, String> sqlmap) {
+        List<Object[]> removed = new ArrayList<>();
+        for (String key : jdbc.queryForList("select key_ from sqlmap", String.class)) {
+            if (!sqlmap.containsKey(key)) removed.add(new Object[]{key});
+        }
+        if (!removed.isEmpty()) {
+            jdbc.batchUpdate("delete from sqlmap where key_ = ?", removed);
+        }
+    }
+
+    /**
+     * 마지막 read() 가 원본이 그대로라서 읽기를 건너뛰었는지
+     */
+    public boolean isLastReadSkipped() {
+        return lastReadSkipped;
+    }
+
+    private String sourceHash() {
+        StringBuilder hashes = new StringBuilder();
+        for (Resource sqlmap : sqlmaps) {
+            try (InputStream is = sqlmap.getInputStream()) {
+                hashes.append(DigestUtils.md5DigestAsHex(is));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(sqlmap.getFilename() + "을 가져올 수 없습니다.", e);
+            }
+        }
+        // 파일이 여러 개면 파일별 해시를 이어 붙인 것을 다시 해시해서 길이를 일정하게 한다
+        return sqlmaps.length == 1 ? hashes.toString() : DigestUtils.md5DigestAsHex(hashes.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -1,63 +1,137 @@
 package springbook.user.sqlservice.updatable;
 
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.transaction.support.TransactionTemplate;
 import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
-import springbook.user.sqlservice.SqlNotFoundException;
+import springbook.user.sqlservice.BulkSqlRegistry;
 import springbook.user.sqlservice.SqlUpdateFailureException;
 
 import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class EmbeddedDbSqlRegistry implements UpdatableSqlRegistry, BulkSqlRegistry {
+    private static final String MERGE_SQL = "merge into sqlmap(key_, sql_) key(key_) values(?,?)";
+    private static final String UPDATE_SQL = "update sqlmap set sql_ = ? where key_ = ?";
+    private static final String INSERT_SQL = "insert into sqlmap(key_, sql_) values(?,?)";
 
-public class EmbeddedDbSqlRegistry implements UpdatableSqlRegistry {
     JdbcTemplate jdbc;
     TransactionTemplate transactionTemplate;
+    // H2 는 MERGE INTO ... KEY(...) 로 한 문장에 upsert 할 수 있다
+    boolean mergeSupported;
 
     public void setDataSource(DataSource dataSource) {
         jdbc = new JdbcTemplate(dataSource);
         transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        mergeSupported = isH2(dataSource);
     }
 
-    @Override
-    public void registerSql(String key, String sql) {
+    private static boolean isH2(DataSource dataSource) {
         try {
-            jdbc.update("insert into sqlmap(key_, sql_) values(?,?)", key, sql);
-        } catch (RuntimeException e) {
-            e.printStackTrace();
+            String productName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "H2".equals(productName);
+        } catch (MetaDataAccessException e) {
+            return false;
         }
     }
 
+    /**
+     * 이미 있는 키면 SQL 을 바꾼다.
+     */
     @Override
-    public String findSql(String key) throws SqlNotFoundException {
-        try {
-            return this.jdbc.queryForObject("select sql_ from sqlmap where key_ = ?", String.class, key);
-        } catch (EmptyResultDataAccessException e) {
-            throw new SqlNotFoundException(key + "에 해당하는 SQL을 찾을 수 없습니다.", e);
+    public void registerSql(String key, String sql) {
+        registerSql(Collections.singletonMap(key, sql));
+    }
 
-        }
+    @Override
+    public void registerSql(Map<String, String> sqlmap) {
+        if (sqlmap.isEmpty()) return;
+
+        transactionTemplate.execute(status -> {
+            if (mergeSupported) {
+                jdbc.batchUpdate(MERGE_SQL, toArgs(sqlmap.keySet(), sqlmap, true));
+                return null;
+            }
+
+            // MERGE 가 없으면 먼저 update 하고, 바뀐 행이 없는 키만 모아서 insert 한다
+            List<String> keys = new ArrayList<>(sqlmap.keySet());
+            int[] updated = jdbc.batchUpdate(UPDATE_SQL, toArgs(keys, sqlmap, false));
+            List<String> missing = missingKeys(keys, updated);
+            if (!missing.isEmpty()) {
+                jdbc.batchUpdate(INSERT_SQL, toArgs(missing, sqlmap, true));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        List<String> sql = this.jdbc.queryForList("select sql_ from sqlmap where key_ = ?", String.class, key);
+        return sql.isEmpty() ? Optional.empty() : Optional.of(sql.get(0));
     }
 
     @Override
     public void updateSql(String key, String sql) throws SqlUpdateFailureException {
-        int affected = jdbc.update("update sqlmap set sql_ = ? where key_ = ?", sql, key);
+        int affected = jdbc.update(UPDATE_SQL, sql, key);
         if (affected == 0) {
             throw new SqlUpdateFailureException(key + "에 해당하는 SQL을 찾을 수 없습니다.");
         }
     }
 
+    /**
+     * 한 번의 배치로 수정한다. 없는 키가 하나라도 있으면 트랜잭션을 롤백해서 아무것도 바뀌지 않게 한다.
+     */
     @Override
     public void updateSql(final Map<String, String> sqlmap) throws SqlUpdateFailureException {
-        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
-            @Override
-            protected void doInTransactionWithoutResult(TransactionStatus status) {
-                for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
-                    updateSql(entry.getKey(), entry.getValue());
-                }
+        if (sqlmap.isEmpty()) return;
+
+        transactionTemplate.execute(status -> {
+            List<String> keys = new ArrayList<>(sqlmap.keySet());
+            int[] updated = jdbc.batchUpdate(UPDATE_SQL, toArgs(keys, sqlmap, false));
+            List<String> missing = missingKeys(keys, updated);
+            if (!missing.isEmpty()) {
+                throw new SqlUpdateFailureException(missing.get(0) + "에 해당하는 SQL을 찾을 수 없습니다.");
             }
+            return null;
         });
     }
+
+    /**
+     * update 배치에서 바뀐 행이 없는 키. 드라이버가 행 수 대신 SUCCESS_NO_INFO 를 돌려주면
+     * 그 키가 있었는지 알 수 없으므로, 테이블의 키를 한 번 읽어서 확인한다.
+     */
+    private List<String> missingKeys(List<String> keys, int[] updated) {
+        Set<String> existing = null;
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == Statement.SUCCESS_NO_INFO) {
+                if (existing == null) {
+                    existing = new HashSet<>(jdbc.queryForList("select key_ from sqlmap", String.class));
+                }
+                if (!existing.contains(keys.get(i))) missing.add(keys.get(i));
+            } else if (updated[i] == 0) {
+                missing.add(keys.get(i));
+            }
+        }
+        return missing;
+    }
+
+    private static List<Object[]> toArgs(Iterable<String> keys, Map<String, String> sqlmap, boolean keyFirst) {
+        List<Object[]> args = new ArrayList<>(sqlmap.size());
+        for (String key : keys) {
+            String sql = sqlmap.get(key);
+            args.add(keyFirst ? new Object[]{key, sql} : new Object[]{sql, key});
+        }
+        return args;
+    }
 }
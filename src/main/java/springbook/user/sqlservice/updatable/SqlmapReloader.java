@@ -0,0 +1,221 @@
+package springbook.user.sqlservice.updatable;
+
+import org.springframework.core.io.Resource;
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+import springbook.user.metrics.LatencyHistogram;
+import springbook.user.sqlservice.BulkSqlRegistry;
+import springbook.user.sqlservice.CollectingSqlRegistry;
+import springbook.user.sqlservice.SqlReader;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SqlmapReloader {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    private SqlReader sqlReader;
+    private UpdatableSqlRegistry sqlRegistry;
+    private Resource[] sqlmaps;
+    private boolean enabled = true;
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+
+    private volatile Map<String, String> appliedSqlmap = Collections.emptyMap();
+
+    private final LongAdder reloadCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LatencyHistogram reloadLatency = new LatencyHistogram();
+    private volatile long lastReloadTimeMillis;
+    private volatile RuntimeException lastFailure;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public void setSqlReader(SqlReader sqlReader) {
+        this.sqlReader = sqlReader;
+    }
+
+    public void setSqlRegistry(UpdatableSqlRegistry sqlRegistry) {
+        this.sqlRegistry = sqlRegistry;
+    }
+
+    public void setSqlmap(Resource sqlmap) {
+        setSqlmaps(sqlmap);
+    }
+
+    /**
+     * 감시할 sqlmap 파일들. 이 중 하나라도 바뀌면 sqlReader 로 다시 읽는다.
+     * 클래스패스 리소스를 주면 빌드 결과물에 복사된 파일을 보게 되므로,
+     * 소스 파일을 고쳤을 때 다시 읽게 하려면 소스 파일을 가리키는 리소스를 준다.
+     */
+    public void setSqlmaps(Resource... sqlmaps) {
+        this.sqlmaps = sqlmaps;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    public synchronized void start() throws IOException {
+        if (!enabled || watcher != null) return;
+
+        // 레지스트리는 컴파일된 sqlmap 이나 저장해 둔 테이블에서 채워졌을 수 있고 실행 중에 고친 SQL 도 담고 있으므로,
+        // 소스 파일이 아니라 레지스트리에 실제로 들어 있는 SQL 을 비교 기준으로 삼는다. 다르면 처음 다시 읽을 때 반영된다
+        appliedSqlmap = registeredSqlmap(readSqlmap().keySet());
+
+        final Set<Path> files = new HashSet<>();
+        for (Resource sqlmap : sqlmaps) {
+            files.add(sqlmap.getFile().toPath().toAbsolutePath());
+        }
+
+        // 파일이 여러 디렉토리에 나뉘어 있으면 디렉토리마다 한 번씩 등록한다
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> directories = new HashSet<>();
+        for (Path file : files) {
+            if (directories.add(file.getParent())) {
+                file.getParent().register(watchService,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            }
+        }
+
+        watcher = new Thread(() -> watch(files), "sqlmap-reloader");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stop() throws IOException {
+        if (watcher == null) return;
+
+        watcher.interrupt();
+        watchService.close();
+        watcher = null;
+    }
+
+    private void watch(Set<Path> files) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.take();
+                boolean changed = isChanged(key, files);
+                key.reset();
+
+                if (changed) {
+                    // 편집기가 파일을 여러 번에 나눠 쓰는 경우를 위해 잠시 기다린 뒤 쌓인 이벤트를 버리고 한 번만 읽는다
+                    Thread.sleep(debounceMillis);
+                    WatchKey pending;
+                    while ((pending = watchService.poll()) != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    reload();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean isChanged(WatchKey key, Set<Path> files) {
+        Path directory = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || files.contains(directory.resolve((Path) event.context()))) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        try {
+            Map<String, String> loaded = readSqlmap();
+
+            Map<String, String> changed = new LinkedHashMap<>();
+            Map<String, String> added = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : loaded.entrySet()) {
+                String applied = appliedSqlmap.get(entry.getKey());
+                if (applied == null) {
+                    added.put(entry.getKey(), entry.getValue());
+                } else if (!applied.equals(entry.getValue())) {
+                    changed.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (sqlRegistry instanceof BulkSqlRegistry) {
+                // 바뀐 키와 새 키를 한 번의 upsert 로 반영해서, 도중에 실패해도 일부만 바뀐 채로 남지 않게 한다
+                Map<String, String> upserts = new LinkedHashMap<>(changed);
+                upserts.putAll(added);
+                if (!upserts.isEmpty()) {
+                    ((BulkSqlRegistry) sqlRegistry).registerSql(upserts);
+                }
+            } else {
+                if (!changed.isEmpty()) {
+                    sqlRegistry.updateSql(changed);
+                }
+                for (Map.Entry<String, String> entry : added.entrySet()) {
+                    sqlRegistry.registerSql(entry.getKey(), entry.getValue());
+                }
+            }
+
+            // 파일에서 빠진 키는 레지스트리에 삭제 기능이 없으므로 그대로 남겨 둔다
+            appliedSqlmap = loaded;
+            lastReloadTimeMillis = System.currentTimeMillis();
+            reloadCount.increment();
+        } catch (RuntimeException e) {
+            lastFailure = e;
+            failureCount.increment();
+        } finally {
+            reloadLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    // 레지스트리에 없는 키는 빼서, 다시 읽을 때 새 키로 등록되게 한다
+    private Map<String, String> registeredSqlmap(Set<String> keys) {
+        Map<String, String> registered = new LinkedHashMap<>();
+        for (String key : keys) {
+            sqlRegistry.lookupSql(key).ifPresent(sql -> registered.put(key, sql));
+        }
+        return registered;
+    }
+
+    private Map<String, String> readSqlmap() {
+        CollectingSqlRegistry collector = new CollectingSqlRegistry();
+        sqlReader.read(collector);
+        return collector.getSqlmap();
+    }
+
+    public long getReloadCount() {
+        return reloadCount.sum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    public long getLastReloadTimeMillis() {
+        return lastReloadTimeMillis;
+    }
+
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    public LatencyHistogram.Snapshot getReloadLatency() {
+        return reloadLatency.snapshot();
+    }
+}
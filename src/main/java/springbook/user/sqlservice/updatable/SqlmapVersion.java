@@ -0,0 +1,23 @@
+package springbook.user.sqlservice.updatable;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 한 시점의 sqlmap 전체. 만든 뒤에는 바뀌지 않는다.
+ */
+@Getter
+public class SqlmapVersion {
+    private final long version;
+    private final long createdAt;
+    private final Map<String, String> sqlmap;
+
+    public SqlmapVersion(long version, long createdAt, Map<String, String> sqlmap) {
+        this.version = version;
+        this.createdAt = createdAt;
+        this.sqlmap = Collections.unmodifiableMap(new HashMap<>(sqlmap));
+    }
+}
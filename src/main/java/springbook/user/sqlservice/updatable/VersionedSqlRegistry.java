@@ -0,0 +1,312 @@
+package springbook.user.sqlservice.updatable;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+import springbook.user.sqlservice.BulkSqlRegistry;
+import springbook.user.sqlservice.SqlUpdateFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * sqlmap 전체를 바뀌지 않는 {@link SqlmapVersion} 으로 보관하고, 그 중 하나를 활성 버전으로 쓴다.
+ * <p>읽는 쪽은 volatile 참조 하나만 읽으므로 락이 없다. 쓰는 쪽은 synchronized 로 한 번에 하나씩 새 상태를 만들어 바꿔 끼운다.
+ * updateSql 은 SQL 을 제자리에서 고치지 않고 새 버전을 만들어 활성화하므로, 잘못 배포한 SQL 은 rollback() 한 번으로 되돌린다.
+ * 버전은 최근 maxVersions 개만 남긴다.
+ * <p>DataSource 를 주면 버전과 활성 버전을 SQLMAP_VERSION, SQLMAP_VERSION_ENTRY, SQLMAP_ACTIVE 테이블에 저장하고,
+ * loadVersions() 로 다시 읽어 올 수 있다. sqlmap 파일에서 읽어 온 0번 버전은 저장하지 않는다.
+ * 버전 번호는 저장된 가장 큰 번호 다음부터 매기므로, loadVersions() 를 부르지 않고 다시 기동해도 번호가 겹치지 않는다.
+ */
+public class VersionedSqlRegistry implements UpdatableSqlRegistry, BulkSqlRegistry {
+    public static final int DEFAULT_MAX_VERSIONS = 10;
+
+    private int maxVersions = DEFAULT_MAX_VERSIONS;
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+
+    private volatile State state = State.initial();
+
+    public void setMaxVersions(int maxVersions) {
+        if (maxVersions < 1) throw new IllegalArgumentException("maxVersions 는 1 이상이어야 합니다.");
+        this.maxVersions = maxVersions;
+    }
+
+    public synchronized void setDataSource(DataSource dataSource) {
+        jdbc = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        Long stored = jdbc.queryForObject("select max(version_) from sqlmap_version", Long.class);
+        State current = state;
+        if (stored != null && stored > current.lastVersion) {
+            state = new State(current.active, current.previous, new LinkedHashMap<>(current.versions), stored);
+        }
+    }
+
+    @Override
+    public Optional<String> lookupSql(String key) {
+        return Optional.ofNullable(state.active.getSqlmap().get(key));
+    }
+
+    /**
+     * 새 버전을 만들지 않고 활성 버전에 SQL 을 더한다. sqlmap 을 처음 읽어 올 때 쓴다.
+     */
+    @Override
+    public void registerSql(String key, String sql) {
+        registerSql(Collections.singletonMap(key, sql));
+    }
+
+    @Override
+    public synchronized void registerSql(Map<String, String> sqlmap) {
+        State current = state;
+        Map<String, String> merged = new HashMap<>(current.active.getSqlmap());
+        merged.putAll(sqlmap);
+        SqlmapVersion replaced = new SqlmapVersion(current.active.getVersion(), current.active.getCreatedAt(), merged);
+
+        if (jdbc != null && replaced.getVersion() > 0) {
+            transactionTemplate.execute(status -> {
+                for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+                    jdbc.update("delete from sqlmap_version_entry where version_ = ? and key_ = ?", replaced.getVersion(), entry.getKey());
+                    jdbc.update("insert into sqlmap_version_entry(version_, key_, sql_) values(?,?,?)",
+                            replaced.getVersion(), entry.getKey(), entry.getValue());
+                }
+                return null;
+            });
+        }
+
+        Map<Long, SqlmapVersion> versions = new LinkedHashMap<>(current.versions);
+        versions.put(replaced.getVersion(), replaced);
+        state = new State(replaced, current.previous, versions, current.lastVersion);
+    }
+
+    @Override
+    public void updateSql(String key, String sql) throws SqlUpdateFailureException {
+        updateSql(Collections.singletonMap(key, sql));
+    }
+
+    /**
+     * 활성 버전에 변경을 적용한 새 버전을 만들어 활성화한다. 하나라도 없는 키가 있으면 아무것도 바꾸지 않는다.
+     */
+    @Override
+    public synchronized void updateSql(Map<String, String> sqlmap) throws SqlUpdateFailureException {
+        Map<String, String> active = state.active.getSqlmap();
+        for (String key : sqlmap.keySet()) {
+            if (!active.containsKey(key)) {
+                throw new SqlUpdateFailureException(key + "에 해당하는 SQL을 찾을 수 없습니다.");
+            }
+        }
+
+        Map<String, String> next = new HashMap<>(active);
+        next.putAll(sqlmap);
+        activate(publish(next));
+    }
+
+    /**
+     * sqlmap 전체로 새 버전을 만든다. 활성화는 하지 않는다.
+     */
+    public synchronized long publish(Map<String, String> sqlmap) {
+        State current = state;
+        SqlmapVersion version = new SqlmapVersion(current.lastVersion + 1, System.currentTimeMillis(), sqlmap);
+
+        Map<Long, SqlmapVersion> versions = new LinkedHashMap<>(current.versions);
+        versions.put(version.getVersion(), version);
+        List<Long> evicted = evict(versions, current.active.getVersion(), version.getVersion());
+
+        if (jdbc != null) {
+            transactionTemplate.execute(status -> {
+                insertVersion(version);
+                for (Long old : evicted) {
+                    deleteVersion(old);
+                }
+                return null;
+            });
+        }
+
+        state = new State(current.active, current.previous, versions, version.getVersion());
+        return version.getVersion();
+    }
+
+    public synchronized void activate(long version) throws SqlUpdateFailureException {
+        State current = state;
+        SqlmapVersion target = current.versions.get(version);
+        if (target == null) {
+            throw new SqlUpdateFailureException(version + " 버전이 없습니다.");
+        }
+        if (target == current.active) return;
+
+        saveActive(version);
+        state = new State(target, new Activation(current.active.getVersion(), current.previous), current.versions, current.lastVersion);
+    }
+
+    /**
+     * 직전에 활성화했던 버전으로 되돌리고 그 버전 번호를 돌려준다. 이미 지운 버전은 건너뛴다.
+     */
+    public synchronized long rollback() throws SqlUpdateFailureException {
+        State current = state;
+        Activation previous = current.previous;
+        while (previous != null && !current.versions.containsKey(previous.version)) {
+            previous = previous.next;
+        }
+        if (previous == null) {
+            throw new SqlUpdateFailureException("되돌릴 버전이 없습니다.");
+        }
+
+        saveActive(previous.version);
+        state = new State(current.versions.get(previous.version), previous.next, current.versions, current.lastVersion);
+        return previous.version;
+    }
+
+    public long getActiveVersion() {
+        return state.active.getVersion();
+    }
+
+    public List<Long> getVersions() {
+        return new ArrayList<>(state.versions.keySet());
+    }
+
+    public Map<String, String> getSqlmap(long version) {
+        SqlmapVersion sqlmapVersion = state.versions.get(version);
+        if (sqlmapVersion == null) {
+            throw new SqlUpdateFailureException(version + " 버전이 없습니다.");
+        }
+        return sqlmapVersion.getSqlmap();
+    }
+
+    /**
+     * 저장해 둔 버전들을 읽어 와서 저장된 활성 버전을 활성화한다. 저장된 버전이 없으면 지금 상태를 그대로 둔다.
+     * <p>저장된 버전을 만든 뒤에 sqlmap 파일에 추가된 키는 저장된 버전에 없으므로, 지금 활성 버전(파일에서 읽은 0번 버전)에만 있는 키를
+     * 읽어 온 버전마다 더한다. 파일에서 키를 지우지 않는 한 버전을 바꿔도 SQL 을 못 찾는 일이 없다.
+     * 읽어 온 뒤 maxVersions 를 넘는 오래된 버전은 지운다.
+     */
+    public synchronized void loadVersions() {
+        Map<Long, Map<String, String>> sqlmaps = new LinkedHashMap<>();
+        Map<Long, Long> createdAt = new HashMap<>();
+        jdbc.query("select version_, created_at_ from sqlmap_version order by version_", rs -> {
+            sqlmaps.put(rs.getLong(1), new HashMap<>());
+            createdAt.put(rs.getLong(1), rs.getTimestamp(2).getTime());
+        });
+        if (sqlmaps.isEmpty()) return;
+
+        jdbc.query("select version_, key_, sql_ from sqlmap_version_entry", rs -> {
+            Map<String, String> sqlmap = sqlmaps.get(rs.getLong(1));
+            if (sqlmap != null) sqlmap.put(rs.getString(2), rs.getString(3));
+        });
+
+        State current = state;
+        Map<String, String> fileSqlmap = current.active.getSqlmap();
+        Map<Long, SqlmapVersion> versions = new LinkedHashMap<>(current.versions);
+        long lastVersion = current.lastVersion;
+        for (Map.Entry<Long, Map<String, String>> entry : sqlmaps.entrySet()) {
+            Map<String, String> sqlmap = entry.getValue();
+            for (Map.Entry<String, String> file : fileSqlmap.entrySet()) {
+                sqlmap.putIfAbsent(file.getKey(), file.getValue());
+            }
+            versions.put(entry.getKey(), new SqlmapVersion(entry.getKey(), createdAt.get(entry.getKey()), sqlmap));
+            lastVersion = Math.max(lastVersion, entry.getKey());
+        }
+
+        List<Long> active = jdbc.queryForList("select version_ from sqlmap_active where id_ = 1", Long.class);
+        SqlmapVersion target = active.isEmpty() ? null : versions.get(active.get(0));
+        if (target == null) target = current.active;
+
+        List<Long> evicted = evict(versions, target.getVersion(), lastVersion);
+        if (!evicted.isEmpty()) {
+            transactionTemplate.execute(status -> {
+                for (Long old : evicted) {
+                    deleteVersion(old);
+                }
+                return null;
+            });
+        }
+
+        if (target == current.active) {
+            state = new State(current.active, current.previous, versions, lastVersion);
+        } else {
+            state = new State(target, new Activation(current.active.getVersion(), current.previous), versions, lastVersion);
+        }
+    }
+
+    // 오래된 것부터 지우되 활성 버전과 방금 만든 버전은 남긴다
+    private List<Long> evict(Map<Long, SqlmapVersion> versions, long activeVersion, long newVersion) {
+        List<Long> evicted = new ArrayList<>();
+        List<Long> candidates = new ArrayList<>(versions.keySet());
+        for (int i = 0; i < candidates.size() && versions.size() > maxVersions; i++) {
+            Long version = candidates.get(i);
+            if (version != activeVersion && version != newVersion) {
+                versions.remove(version);
+                evicted.add(version);
+            }
+        }
+        return evicted;
+    }
+
+    private void insertVersion(SqlmapVersion version) {
+        jdbc.update("insert into sqlmap_version(version_, created_at_) values(?,?)",
+                version.getVersion(), new Timestamp(version.getCreatedAt()));
+        List<Object[]> entries = new ArrayList<>(version.getSqlmap().size());
+        for (Map.Entry<String, String> entry : version.getSqlmap().entrySet()) {
+            entries.add(new Object[]{version.getVersion(), entry.getKey(), entry.getValue()});
+        }
+        jdbc.batchUpdate("insert into sqlmap_version_entry(version_, key_, sql_) values(?,?,?)", entries);
+    }
+
+    private void deleteVersion(long version) {
+        jdbc.update("delete from sqlmap_version_entry where version_ = ?", version);
+        jdbc.update("delete from sqlmap_version where version_ = ?", version);
+    }
+
+    private void saveActive(long version) {
+        if (jdbc == null) return;
+
+        transactionTemplate.execute(status -> {
+            // 0번 버전은 저장하지 않으므로, 0번으로 돌아가면 저장된 활성 버전을 지운다
+            if (version == 0) {
+                jdbc.update("delete from sqlmap_active where id_ = 1");
+            } else if (jdbc.update("update sqlmap_active set version_ = ? where id_ = 1", version) == 0) {
+                jdbc.update("insert into sqlmap_active(id_, version_) values(1, ?)", version);
+            }
+            return null;
+        });
+    }
+
+    private static class State {
+        final SqlmapVersion active;
+        final Activation previous;
+        final Map<Long, SqlmapVersion> versions;
+        final long lastVersion;
+
+        State(SqlmapVersion active, Activation previous, Map<Long, SqlmapVersion> versions, long lastVersion) {
+            this.active = active;
+            this.previous = previous;
+            this.versions = Collections.unmodifiableMap(versions);
+            this.lastVersion = lastVersion;
+        }
+
+        static State initial() {
+            SqlmapVersion empty = new SqlmapVersion(0, System.currentTimeMillis(), Collections.<String, String>emptyMap());
+            Map<Long, SqlmapVersion> versions = new LinkedHashMap<>();
+            versions.put(0L, empty);
+            return new State(empty, null, versions, 0);
+        }
+    }
+
+    // 이전에 활성화했던 버전 번호들. 맨 앞이 가장 최근이다
+    private static class Activation {
+        final long version;
+        final Activation next;
+
+        Activation(long version, Activation next) {
+            this.version = version;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+CREATE TABLE IF NOT EXISTS SQLMAP(
+    KEY_ VARCHAR(100) PRIMARY KEY,
+    SQL_ VARCHAR(4000) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS SQLMAP_SOURCE(
+    ID_ INT PRIMARY KEY,
+    HASH_ VARCHAR(64) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS SQLMAP_VERSION(
+    VERSION_ BIGINT PRIMARY KEY,
+    CREATED_AT_ TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS SQLMAP_VERSION_ENTRY(
+    VERSION_ BIGINT NOT NULL,
+    KEY_ VARCHAR(100) NOT NULL,
+    SQL_ VARCHAR(4000) NOT NULL,
+    PRIMARY KEY (VERSION_, KEY_)
+);
+
+CREATE TABLE IF NOT EXISTS SQLMAP_ACTIVE(
+    ID_ INT PRIMARY KEY,
+    VERSION_ BIGINT NOT NULL
+);
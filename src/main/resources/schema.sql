@@ -2,5 +2,35 @@ DROP TABLE SQLMAP IF EXISTS;
 
 CREATE TABLE SQLMAP(
     KEY_ VARCHAR(100) PRIMARY KEY,
-    SQL_ VARCHAR(100) NOT NULL
-);
\ No newline at end of file
+    SQL_ VARCHAR(4000) NOT NULL
+);
+
+DROP TABLE SQLMAP_SOURCE IF EXISTS;
+
+CREATE TABLE SQLMAP_SOURCE(
+    ID_ INT PRIMARY KEY,
+    HASH_ VARCHAR(64) NOT NULL
+);
+
+DROP TABLE SQLMAP_VERSION IF EXISTS;
+
+CREATE TABLE SQLMAP_VERSION(
+    VERSION_ BIGINT PRIMARY KEY,
+    CREATED_AT_ TIMESTAMP NOT NULL
+);
+
+DROP TABLE SQLMAP_VERSION_ENTRY IF EXISTS;
+
+CREATE TABLE SQLMAP_VERSION_ENTRY(
+    VERSION_ BIGINT NOT NULL,
+    KEY_ VARCHAR(100) NOT NULL,
+    SQL_ VARCHAR(4000) NOT NULL,
+    PRIMARY KEY (VERSION_, KEY_)
+);
+
+DROP TABLE SQLMAP_ACTIVE IF EXISTS;
+
+CREATE TABLE SQLMAP_ACTIVE(
+    ID_ INT PRIMARY KEY,
+    VERSION_ BIGINT NOT NULL
+);
@@ -0,0 +1,62 @@
+package com.spring.tobyspring;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import springbook.user.metrics.TransactionMetrics;
+import springbook.user.service.TxProxyFactoryBean;
+import springbook.user.service.UserService;
+
+import java.util.Properties;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TransactionMetricsController.class)
+class TransactionMetricsControllerTest {
+    static final String GET = "$['springbook.user.service.UserService.get(java.lang.String)']";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    TransactionMetrics transactionMetrics;
+
+    @Test
+    void recordedCallAppears() throws Exception {
+        mockMvc.perform(get("/metrics/transactions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(GET).doesNotExist());
+
+        userServiceProxy().get("gyumee");
+
+        mockMvc.perform(get("/metrics/transactions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(GET + ".commits").value(1))
+                .andExpect(jsonPath(GET + ".rollbacks").value(0))
+                .andExpect(jsonPath(GET + ".bodyTime.count").value(1));
+    }
+
+    // 애플리케이션 컨텍스트의 TransactionMetrics 빈을 받은 트랜잭션 프록시
+    private UserService userServiceProxy() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(new SimpleTransactionStatus());
+
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+
+        TxProxyFactoryBean factoryBean = new TxProxyFactoryBean();
+        factoryBean.setTarget(mock(UserService.class));
+        factoryBean.setTransactionManager(transactionManager);
+        factoryBean.setServiceInterface(UserService.class);
+        factoryBean.setTransactionAttributes(attributes);
+        factoryBean.setTransactionMetrics(transactionMetrics);
+        return (UserService) factoryBean.getObject();
+    }
+}
@@ -36,7 +36,7 @@ public class OxmTest {
 
         List<SqlType> sqlList = sqlmap.getSql();
 
-        assertThat(sqlList.size(), is(6));
+        assertThat(sqlList.size(), is(9));
         assertThat(sqlList.get(0).getKey(), is("userAdd"));
     }
 
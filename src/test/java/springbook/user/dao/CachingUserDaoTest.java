@@ -0,0 +1,108 @@
+package springbook.user.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import springbook.user.domain.Level;
+import springbook.user.domain.User;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class CachingUserDaoTest {
+    UserDao userDaoJdbc;
+    CachingUserDao userDao;
+
+    User user1;
+    User user2;
+
+    @BeforeEach
+    public void setUp() {
+        user1 = new User("gyumee", "박성철", "springno1", Level.BASIC, 1, 0, "hihisososo@naver.com");
+        user2 = new User("leegw700", "이길원", "springno2", Level.SILVER, 55, 10, "test@dqdqdq.com");
+
+        userDaoJdbc = mock(UserDao.class);
+        when(userDaoJdbc.get(user1.getId())).thenReturn(user1);
+        when(userDaoJdbc.get(user2.getId())).thenReturn(user2);
+
+        userDao = new CachingUserDao();
+        userDao.setUserDao(userDaoJdbc);
+    }
+
+    @Test
+    public void getFromCache() {
+        userDao.get(user1.getId());
+        User cached = userDao.get(user1.getId());
+
+        verify(userDaoJdbc, times(1)).get(user1.getId());
+        assertThat(cached.getName(), is(user1.getName()));
+        assertThat(userDao.getHitCount(), is(1L));
+        assertThat(userDao.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void cachedUserIsNotShared() {
+        userDao.get(user1.getId());
+        userDao.get(user1.getId()).setLevel(Level.GOLD);
+
+        assertThat(userDao.get(user1.getId()).getLevel(), is(Level.BASIC));
+    }
+
+    @Test
+    public void invalidateOnUpdate() {
+        userDao.get(user1.getId());
+        userDao.update(user1);
+        userDao.get(user1.getId());
+
+        verify(userDaoJdbc, times(2)).get(user1.getId());
+    }
+
+    @Test
+    public void invalidateOnDeleteAll() {
+        userDao.get(user1.getId());
+        userDao.get(user2.getId());
+        userDao.deleteAll();
+
+        assertThat(userDao.size(), is(0));
+    }
+
+    @Test
+    public void evictBySize() {
+        userDao.setMaximumSize(1);
+
+        userDao.get(user1.getId());
+        userDao.get(user2.getId());
+
+        assertThat(userDao.size(), is(1));
+        assertThat(userDao.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void evictLeastRecentlyRead() {
+        User user3 = new User("bumjin", "박범진", "springno3", Level.GOLD, 100, 40, "bumjin@test.com");
+        when(userDaoJdbc.get(user3.getId())).thenReturn(user3);
+        userDao.setMaximumSize(2);
+
+        userDao.get(user1.getId());
+        userDao.get(user2.getId());
+        userDao.get(user1.getId());
+        userDao.get(user3.getId());
+
+        assertThat(userDao.size(), is(2));
+        userDao.get(user1.getId());
+        userDao.get(user2.getId());
+        verify(userDaoJdbc, times(1)).get(user1.getId());
+        verify(userDaoJdbc, times(2)).get(user2.getId());
+    }
+
+    @Test
+    public void evictByTtl() {
+        userDao.setTtlMillis(0);
+
+        userDao.get(user1.getId());
+        userDao.get(user1.getId());
+
+        verify(userDaoJdbc, times(2)).get(user1.getId());
+        assertThat(userDao.getEvictionCount(), is(1L));
+    }
+}
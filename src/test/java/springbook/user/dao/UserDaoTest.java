@@ -12,6 +12,7 @@ import springbook.user.domain.Level;
 import springbook.user.domain.User;
 import springbook.user.service.UserService;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -106,6 +107,63 @@ public class UserDaoTest {
         checkSameUser(user2, users3.get(2));
     }
 
+    @Test
+    public void getAllAfter() {
+        dao.deleteAll();
+
+        dao.add(user1); // Id:gyumee
+        dao.add(user2); // Id: leegw700
+        dao.add(user3); // Id: bumjin
+
+        List<User> firstChunk = dao.getAllAfter("", 2);
+        assertThat(firstChunk.size(), is(2));
+        checkSameUser(user3, firstChunk.get(0));
+        checkSameUser(user1, firstChunk.get(1));
+
+        List<User> secondChunk = dao.getAllAfter(firstChunk.get(1).getId(), 2);
+        assertThat(secondChunk.size(), is(1));
+        checkSameUser(user2, secondChunk.get(0));
+
+        assertThat(dao.getAllAfter(user2.getId(), 2).size(), is(0));
+    }
+
+    @Test
+    public void addAllAndUpdateAll() {
+        dao.deleteAll();
+
+        dao.addAll(Arrays.asList(user1, user2, user3));
+        assertThat(dao.getCount(), is(3));
+
+        user1.setLevel(Level.SILVER);
+        user2.setLogin(999);
+        dao.updateAll(Arrays.asList(user1, user2));
+
+        checkSameUser(user1, dao.get(user1.getId()));
+        checkSameUser(user2, dao.get(user2.getId()));
+        checkSameUser(user3, dao.get(user3.getId()));
+    }
+
+    @Test
+    public void upgradeLevels() {
+        dao.deleteAll();
+
+        dao.add(user1); // BASIC, login 1
+        dao.add(user2); // SILVER, recommend 10
+        dao.add(user3); // GOLD
+
+        List<User> silverUpgraded = dao.upgradeLevels(Level.SILVER, null, 10);
+        assertThat(silverUpgraded.size(), is(1));
+        assertThat(silverUpgraded.get(0).getId(), is(user2.getId()));
+        assertThat(silverUpgraded.get(0).getLevel(), is(Level.GOLD));
+
+        List<User> basicUpgraded = dao.upgradeLevels(Level.BASIC, 2, null);
+        assertThat(basicUpgraded.size(), is(0));
+
+        assertThat(dao.get(user1.getId()).getLevel(), is(Level.BASIC));
+        assertThat(dao.get(user2.getId()).getLevel(), is(Level.GOLD));
+        assertThat(dao.get(user3.getId()).getLevel(), is(Level.GOLD));
+    }
+
     private void checkSameUser(User user1, User user2) {
         assertThat(user1.getId(), is(user2.getId()));
         assertThat(user1.getName(), is(user2.getName()));
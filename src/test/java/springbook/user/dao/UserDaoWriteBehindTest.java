@@ -0,0 +1,130 @@
+package springbook.user.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import springbook.user.domain.Level;
+import springbook.user.domain.User;
+import springbook.user.sqlservice.BaseSqlService;
+import springbook.user.sqlservice.HashMapSqlRegistry;
+import springbook.user.sqlservice.StaxXmlSqlReader;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UserDaoWriteBehindTest {
+    EmbeddedDatabase db;
+    JdbcTemplate jdbc;
+    TransactionTemplate transactionTemplate;
+    UserDaoJdbc dao;
+
+    User user1;
+    User user2;
+    User user3;
+
+    @BeforeEach
+    public void setUp() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbc = new JdbcTemplate(db);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(db));
+
+        StaxXmlSqlReader sqlReader = new StaxXmlSqlReader();
+        sqlReader.setSqlmap(new ClassPathResource("/sqlmap.xml"));
+        BaseSqlService sqlService = new BaseSqlService();
+        sqlService.setSqlReader(sqlReader);
+        sqlService.setSqlRegistry(new HashMapSqlRegistry());
+        sqlService.loadSql();
+
+        dao = new UserDaoJdbc();
+        dao.setDataSource(db);
+        dao.setSqlService(sqlService);
+        dao.setWriteBehind(true);
+        dao.createTable();
+
+        user1 = new User("gyumee", "박성철", "springno1", Level.BASIC, 1, 0, "hihisososo@naver.com");
+        user2 = new User("leegw700", "이길원", "springno2", Level.SILVER, 55, 10, "test@dqdqdq.com");
+        user3 = new User("bumjin", "박범진", "springno3", Level.GOLD, 100, 40, "test@dqdqdq.com");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void writesDeferredUntilCommit() {
+        transactionTemplate.executeWithoutResult(status -> {
+            dao.add(user1);
+            dao.add(user2);
+            assertThat(rowCount(), is(0));
+        });
+
+        assertThat(rowCount(), is(2));
+        assertThat(TransactionSynchronizationManager.getResourceMap().isEmpty(), is(true));
+    }
+
+    @Test
+    public void readFlushesPendingWrites() {
+        transactionTemplate.executeWithoutResult(status -> {
+            dao.add(user1);
+            assertThat(dao.getCount(), is(1));
+
+            user1.setName("성철");
+            dao.update(user1);
+            assertThat(dao.get(user1.getId()).getName(), is("성철"));
+        });
+    }
+
+    @Test
+    public void rollbackDiscardsPendingWrites() {
+        transactionTemplate.executeWithoutResult(status -> {
+            dao.add(user1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(rowCount(), is(0));
+        assertThat(TransactionSynchronizationManager.getResourceMap().isEmpty(), is(true));
+    }
+
+    @Test
+    public void preserveStatementOrder() {
+        dao.setBatchSize(2);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            dao.addAll(Arrays.asList(user1, user2, user3));
+            user2.setLevel(Level.GOLD);
+            dao.update(user2);
+            dao.deleteAll();
+            dao.add(user3);
+            assertThat(rowCount(), is(0));
+        });
+
+        assertThat(rowCount(), is(1));
+        assertThat(dao.get(user3.getId()).getLevel(), is(Level.GOLD));
+    }
+
+    @Test
+    public void writeImmediatelyWithoutTransaction() {
+        dao.add(user1);
+
+        assertThat(rowCount(), is(1));
+    }
+
+    // 같은 트랜잭션의 커넥션으로 DAO 를 거치지 않고 센다
+    private int rowCount() {
+        return jdbc.queryForObject("select count(*) from users", Integer.class);
+    }
+}
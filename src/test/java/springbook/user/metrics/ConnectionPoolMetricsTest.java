@@ -0,0 +1,67 @@
+package springbook.user.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConnectionPoolMetricsTest {
+    @Test
+    public void trackerCallbacks() {
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        assertThat(metrics.getActiveConnections(), is(0));
+        assertThat(metrics.getTotalConnections(), is(0));
+
+        IMetricsTracker tracker = metrics.create("test", new PoolStats(0) {
+            @Override
+            protected void update() {
+                totalConnections = 3;
+                idleConnections = 1;
+                activeConnections = 2;
+                pendingThreads = 4;
+            }
+        });
+        tracker.recordConnectionAcquiredNanos(1000);
+        tracker.recordConnectionAcquiredNanos(3000);
+        tracker.recordConnectionTimeout();
+
+        assertThat(metrics.getTotalConnections(), is(3));
+        assertThat(metrics.getIdleConnections(), is(1));
+        assertThat(metrics.getActiveConnections(), is(2));
+        assertThat(metrics.getPendingThreads(), is(4));
+        assertThat(metrics.getConnectionTimeouts(), is(1L));
+        assertThat(metrics.getAcquireTime().getCount(), is(2L));
+        assertThat(metrics.getAcquireTime().getMaxNanos(), is(3000L));
+    }
+
+    @Test
+    public void recordedByHikariPool() throws SQLException {
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:connectionPoolMetricsTest");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(1);
+        dataSource.setConnectionTimeout(250);
+        dataSource.setMetricsTrackerFactory(metrics);
+        try {
+            try (Connection connection = dataSource.getConnection()) {
+                assertThat(metrics.getActiveConnections(), is(1));
+                assertThat(metrics.getAcquireTime().getCount(), is(1L));
+
+                // 하나뿐인 커넥션을 쥐고 있으므로 다음 요청은 제한 시간을 넘긴다
+                assertThrows(SQLException.class, dataSource::getConnection);
+                assertThat(metrics.getConnectionTimeouts(), is(1L));
+            }
+        } finally {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package springbook.user.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketBoundaries() {
+        // 8 미만은 값마다 구간이 하나씩이다
+        for (int nanos = 0; nanos < 8; nanos++) {
+            assertThat(LatencyHistogram.bucketOf(nanos), is(nanos));
+            assertThat(LatencyHistogram.upperBoundOf(nanos), is((long) nanos));
+        }
+        assertThat(LatencyHistogram.bucketOf(8), is(8));
+        assertThat(LatencyHistogram.bucketOf(15), is(15));
+        assertThat(LatencyHistogram.bucketOf(16), is(16));
+        assertThat(LatencyHistogram.bucketOf(17), is(16));
+        assertThat(LatencyHistogram.bucketOf(18), is(17));
+        assertThat(LatencyHistogram.upperBoundOf(16), is(17L));
+
+        // 모든 구간의 상한은 그 구간에 들고, 상한 + 1 은 다음 구간의 시작이다
+        int last = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+        for (int bucket = 0; bucket < last; bucket++) {
+            long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            assertThat(LatencyHistogram.bucketOf(upperBound), is(bucket));
+            assertThat(LatencyHistogram.bucketOf(upperBound + 1), is(bucket + 1));
+        }
+    }
+
+    @Test
+    public void relativeError() {
+        for (long nanos = 8; nanos < 1_000_000; nanos = nanos * 3 / 2 + 1) {
+            long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(nanos));
+            assertThat(upperBound - nanos, lessThanOrEqualTo(nanos / 8));
+        }
+    }
+
+    @Test
+    public void largestValueDoesNotOverflow() {
+        int bucket = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+        assertThat(LatencyHistogram.upperBoundOf(bucket), is(Long.MAX_VALUE));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(1L));
+        assertThat(snapshot.getMaxNanos(), is(Long.MAX_VALUE));
+        assertThat(snapshot.getP999Nanos(), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void negativeIsRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(1L));
+        assertThat(snapshot.getMaxNanos(), is(0L));
+        assertThat(snapshot.getP50Nanos(), is(0L));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertThat(snapshot.getCount(), is(0L));
+        assertThat(snapshot.getMeanNanos(), is(0L));
+        assertThat(snapshot.getP99Nanos(), is(0L));
+    }
+
+    @Test
+    public void snapshotPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(1000L));
+        assertThat(snapshot.getMeanNanos(), is(500L));
+        assertThat(snapshot.getMaxNanos(), is(1000L));
+        // 백분위수는 값이 든 구간의 상한이다. 최댓값을 넘지 않는다
+        assertThat(snapshot.getP50Nanos(), is(511L));
+        assertThat(snapshot.getP90Nanos(), is(959L));
+        assertThat(snapshot.getP99Nanos(), is(1000L));
+        assertThat(snapshot.getP999Nanos(), is(1000L));
+    }
+}
@@ -0,0 +1,28 @@
+package springbook.user.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TransactionMetricsTest {
+    @Test
+    public void overloadsAreRecordedSeparately() throws Exception {
+        TransactionMetrics metrics = new TransactionMetrics();
+        TransactionMetrics.MethodMetrics valueOfInt = metrics.forMethod(String.class.getMethod("valueOf", int.class));
+        TransactionMetrics.MethodMetrics valueOfChars = metrics.forMethod(String.class.getMethod("valueOf", char[].class));
+
+        assertThat(valueOfInt, not(sameInstance(valueOfChars)));
+        assertThat(metrics.forMethod(String.class.getMethod("valueOf", int.class)), sameInstance(valueOfInt));
+
+        valueOfInt.recordCommit(10);
+        assertThat(new ArrayList<>(metrics.snapshot().keySet()),
+                is(Arrays.asList("java.lang.String.valueOf(char[])", "java.lang.String.valueOf(int)")));
+        assertThat(metrics.snapshot().get("java.lang.String.valueOf(int)").getCommits(), is(1L));
+    }
+}
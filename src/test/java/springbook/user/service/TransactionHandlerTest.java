@@ -0,0 +1,244 @@
+package springbook.user.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import springbook.user.domain.User;
+import springbook.user.metrics.TransactionMetrics;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+public class TransactionHandlerTest {
+    UserService target;
+    PlatformTransactionManager transactionManager;
+    TransactionStatus status;
+    TransactionHandler txHandler;
+
+    @BeforeEach
+    public void setUp() {
+        target = mock(UserService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(status);
+
+        txHandler = new TransactionHandler();
+        txHandler.setTarget(target);
+        txHandler.setTransactionManager(transactionManager);
+    }
+
+    @Test
+    public void attributesPerMethodPattern() {
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+        attributes.setProperty("*", "PROPAGATION_REQUIRED,ISOLATION_READ_COMMITTED,timeout_5");
+        txHandler.setTransactionAttributes(attributes);
+
+        UserService userService = proxy();
+        userService.get("gyumee");
+        userService.getAll();
+        userService.add(new User());
+
+        ArgumentCaptor<TransactionDefinition> definitions = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(3)).getTransaction(definitions.capture());
+        List<TransactionDefinition> values = definitions.getAllValues();
+
+        assertThat(values.get(0).isReadOnly(), is(true));
+        assertThat(values.get(1).isReadOnly(), is(true));
+        assertThat(values.get(2).isReadOnly(), is(false));
+        assertThat(values.get(2).getIsolationLevel(), is(TransactionDefinition.ISOLATION_READ_COMMITTED));
+        assertThat(values.get(2).getTimeout(), is(5));
+        verify(transactionManager, times(3)).commit(status);
+    }
+
+    @Test
+    public void attributeResolvedOnce() {
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+        txHandler.setTransactionAttributes(attributes);
+
+        UserService userService = proxy();
+        userService.get("gyumee");
+        userService.get("leegw700");
+
+        ArgumentCaptor<TransactionDefinition> definitions = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(2)).getTransaction(definitions.capture());
+        assertThat(definitions.getAllValues().get(0), sameInstance(definitions.getAllValues().get(1)));
+    }
+
+    @Test
+    public void notMatchedMethodRunsWithoutTransaction() {
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+        txHandler.setTransactionAttributes(attributes);
+
+        proxy().deleteAll();
+
+        verify(target).deleteAll();
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    public void rollbackRules() {
+        Properties attributes = new Properties();
+        attributes.setProperty("*", "PROPAGATION_REQUIRED,+IllegalStateException");
+        txHandler.setTransactionAttributes(attributes);
+        doThrow(new IllegalStateException()).when(target).upgradeLevels();
+        doThrow(new IllegalArgumentException()).when(target).deleteAll();
+
+        UserService userService = proxy();
+
+        assertThrows(IllegalStateException.class, userService::upgradeLevels);
+        verify(transactionManager).commit(status);
+        verify(transactionManager, never()).rollback(status);
+
+        assertThrows(IllegalArgumentException.class, userService::deleteAll);
+        verify(transactionManager).rollback(status);
+    }
+
+    @Test
+    public void keepExceptionWhenRollbackFails() {
+        txHandler.setPattern("upgrade");
+        IllegalStateException targetEx = new IllegalStateException();
+        doThrow(targetEx).when(target).upgradeLevels();
+        doThrow(new TransactionSystemException("rollback failed")).when(transactionManager).rollback(status);
+
+        TransactionSystemException ex = assertThrows(TransactionSystemException.class, proxy()::upgradeLevels);
+        assertThat(ex.getApplicationException(), sameInstance(targetEx));
+    }
+
+    @Test
+    public void keepExceptionWhenCommitFailsWithMetrics() {
+        Properties attributes = new Properties();
+        attributes.setProperty("*", "PROPAGATION_REQUIRED,+IllegalStateException");
+        txHandler.setTransactionAttributes(attributes);
+        txHandler.setTransactionMetrics(new TransactionMetrics());
+        IllegalStateException targetEx = new IllegalStateException();
+        doThrow(targetEx).when(target).upgradeLevels();
+        IllegalArgumentException commitEx = new IllegalArgumentException("commit failed");
+        doThrow(commitEx).when(transactionManager).commit(status);
+
+        assertThat(assertThrows(IllegalArgumentException.class, proxy()::upgradeLevels), sameInstance(commitEx));
+        assertThat(commitEx.getSuppressed()[0], sameInstance(targetEx));
+    }
+
+    @Test
+    public void patternWithoutAttributes() {
+        txHandler.setPattern("upgrade");
+        doThrow(new IllegalStateException()).when(target).upgradeLevels();
+
+        UserService userService = proxy();
+        userService.get("gyumee");
+        verifyNoInteractions(transactionManager);
+
+        assertThrows(IllegalStateException.class, userService::upgradeLevels);
+        verify(transactionManager).rollback(status);
+        verify(transactionManager, never()).commit(status);
+    }
+
+    @Test
+    public void recordMetrics() {
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+        attributes.setProperty("upgrade*", "PROPAGATION_REQUIRED");
+        txHandler.setTransactionAttributes(attributes);
+        TransactionMetrics metrics = new TransactionMetrics();
+        txHandler.setTransactionMetrics(metrics);
+        doThrow(new IllegalStateException()).when(target).upgradeLevels();
+
+        UserService userService = proxy();
+        userService.get("gyumee");
+        userService.get("leegw700");
+        userService.deleteAll();
+        assertThrows(IllegalStateException.class, userService::upgradeLevels);
+
+        Map<String, TransactionMetrics.MethodSnapshot> snapshot = metrics.snapshot();
+        assertThat(snapshot.keySet().toString(), is("[springbook.user.service.UserService.get(java.lang.String), springbook.user.service.UserService.upgradeLevels()]"));
+
+        TransactionMetrics.MethodSnapshot get = snapshot.get("springbook.user.service.UserService.get(java.lang.String)");
+        assertThat(get.getCommits(), is(2L));
+        assertThat(get.getBeginTime().getCount(), is(2L));
+        assertThat(get.getBodyTime().getCount(), is(2L));
+        assertThat(get.getCommitTime().getCount(), is(2L));
+
+        TransactionMetrics.MethodSnapshot upgradeLevels = snapshot.get("springbook.user.service.UserService.upgradeLevels()");
+        assertThat(upgradeLevels.getRollbacks(), is(1L));
+        assertThat(upgradeLevels.getExceptions(), is(1L));
+        assertThat(upgradeLevels.getRollbackTime().getCount(), is(1L));
+        assertThat(upgradeLevels.getCommitTime().getCount(), is(0L));
+    }
+
+    @Test
+    public void nullAndEmptyArgs() throws Throwable {
+        txHandler.setPattern("upgrade");
+
+        // 인자 없는 메소드는 JDK 프록시가 null 을 넘기지만 빈 배열로 불러도 같게 동작해야 한다
+        assertThat(txHandler.invoke(null, UserService.class.getMethod("upgradeLevels"), null), is(nullValue()));
+        assertThat(txHandler.invoke(null, UserService.class.getMethod("upgradeLevels"), new Object[0]), is(nullValue()));
+
+        verify(target, times(2)).upgradeLevels();
+        verify(transactionManager, times(2)).commit(status);
+    }
+
+    @Test
+    public void objectMethodsRunWithoutTransaction() {
+        Properties attributes = new Properties();
+        attributes.setProperty("*", "PROPAGATION_REQUIRED");
+        txHandler.setTransactionAttributes(attributes);
+
+        UserService userService = proxy();
+
+        assertThat(userService.toString(), is(target.toString()));
+        assertThat(userService.hashCode(), is(target.hashCode()));
+        assertThat(userService.equals(target), is(true));
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    public void setPatternInvalidatesCache() {
+        txHandler.setPattern("upgrade");
+        UserService userService = proxy();
+        userService.upgradeLevels();
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+
+        txHandler.setPattern("get");
+        userService.upgradeLevels();
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+
+        userService.get("gyumee");
+        verify(transactionManager, times(2)).getTransaction(any(TransactionDefinition.class));
+    }
+
+    @Test
+    public void setTargetInvalidatesCache() {
+        txHandler.setPattern("get");
+        UserService userService = proxy();
+        userService.get("gyumee");
+        verify(target).get("gyumee");
+
+        UserService newTarget = mock(UserService.class);
+        txHandler.setTarget(newTarget);
+        userService.get("gyumee");
+
+        verify(newTarget).get("gyumee");
+        verify(target, times(1)).get("gyumee");
+    }
+
+    private UserService proxy() {
+        return (UserService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{UserService.class}, txHandler);
+    }
+}
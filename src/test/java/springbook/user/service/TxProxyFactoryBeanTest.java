@@ -0,0 +1,224 @@
+package springbook.user.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import springbook.user.domain.User;
+import springbook.user.metrics.TransactionMetrics;
+
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.function.IntSupplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+public class TxProxyFactoryBeanTest {
+    UserService target;
+    PlatformTransactionManager transactionManager;
+    TransactionStatus status;
+
+    @BeforeEach
+    public void setUp() {
+        target = mock(UserService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(status);
+    }
+
+    @Test
+    public void generatedProxy() throws Exception {
+        User user = new User();
+        when(target.get("gyumee")).thenReturn(user);
+
+        UserService userService = (UserService) factoryBean(true).getObject();
+        assertThat(Proxy.isProxyClass(userService.getClass()), is(false));
+
+        assertThat(userService.get("gyumee"), sameInstance(user));
+        userService.add(user);
+        verify(target).add(user);
+
+        ArgumentCaptor<TransactionDefinition> definitions = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(2)).getTransaction(definitions.capture());
+        assertThat(definitions.getAllValues().get(0).isReadOnly(), is(true));
+        assertThat(definitions.getAllValues().get(1).isReadOnly(), is(false));
+        verify(transactionManager, times(2)).commit(status);
+    }
+
+    @Test
+    public void generatedProxyRollback() throws Exception {
+        doThrow(new IllegalStateException()).when(target).upgradeLevels();
+
+        UserService userService = (UserService) factoryBean(true).getObject();
+
+        assertThrows(IllegalStateException.class, userService::upgradeLevels);
+        verify(transactionManager).rollback(status);
+        verify(transactionManager, never()).commit(status);
+    }
+
+    @Test
+    public void generatedProxyKeepsExceptionWhenRollbackFails() throws Exception {
+        IllegalStateException targetEx = new IllegalStateException();
+        doThrow(targetEx).when(target).upgradeLevels();
+        doThrow(new TransactionSystemException("rollback failed")).when(transactionManager).rollback(status);
+
+        UserService userService = (UserService) factoryBean(true).getObject();
+
+        TransactionSystemException ex = assertThrows(TransactionSystemException.class, userService::upgradeLevels);
+        assertThat(ex.getApplicationException(), sameInstance(targetEx));
+    }
+
+    @Test
+    public void generatedProxyKeepsExceptionWhenTimedRollbackFails() throws Exception {
+        IllegalStateException targetEx = new IllegalStateException();
+        doThrow(targetEx).when(target).upgradeLevels();
+        IllegalStateException rollbackEx = new IllegalStateException("rollback failed");
+        doThrow(rollbackEx).when(transactionManager).rollback(status);
+        TxProxyFactoryBean factoryBean = factoryBean(true);
+        factoryBean.setTransactionMetrics(new TransactionMetrics());
+
+        UserService userService = (UserService) factoryBean.getObject();
+
+        assertThat(assertThrows(IllegalStateException.class, userService::upgradeLevels), sameInstance(rollbackEx));
+        assertThat(rollbackEx.getSuppressed()[0], sameInstance(targetEx));
+    }
+
+    @Test
+    public void notMatchedMethodRunsWithoutTransaction() throws Exception {
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+        TxProxyFactoryBean factoryBean = factoryBean(true);
+        factoryBean.setTransactionAttributes(attributes);
+
+        ((UserService) factoryBean.getObject()).deleteAll();
+
+        verify(target).deleteAll();
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    public void proxyClassSharedAcrossFactoryBeans() throws Exception {
+        TxProxyFactoryBean first = factoryBean(true);
+        TxProxyFactoryBean second = factoryBean(true);
+
+        assertThat(first.getObject(), sameInstance(first.getObject()));
+        assertThat(first.getObject(), not(sameInstance(second.getObject())));
+        assertThat(first.getObject().getClass(), sameInstance(second.getObject().getClass()));
+    }
+
+    @Test
+    public void jdkProxy() throws Exception {
+        TxProxyFactoryBean factoryBean = factoryBean(false);
+
+        assertThat(Proxy.isProxyClass(factoryBean.getObject().getClass()), is(true));
+        assertThat(factoryBean.getObject(), sameInstance(factoryBean.getObject()));
+    }
+
+    @Test
+    public void generatedProxyRecordsMetrics() throws Exception {
+        doThrow(new IllegalStateException()).when(target).upgradeLevels();
+        TransactionMetrics metrics = new TransactionMetrics();
+        TxProxyFactoryBean factoryBean = factoryBean(true);
+        factoryBean.setTransactionMetrics(metrics);
+
+        UserService userService = (UserService) factoryBean.getObject();
+        userService.get("gyumee");
+        assertThrows(IllegalStateException.class, userService::upgradeLevels);
+
+        TransactionMetrics.MethodSnapshot get = metrics.snapshot().get("springbook.user.service.UserService.get(java.lang.String)");
+        assertThat(get.getCommits(), is(1L));
+        assertThat(get.getBodyTime().getCount(), is(1L));
+
+        TransactionMetrics.MethodSnapshot upgradeLevels = metrics.snapshot().get("springbook.user.service.UserService.upgradeLevels()");
+        assertThat(upgradeLevels.getRollbacks(), is(1L));
+        assertThat(upgradeLevels.getExceptions(), is(1L));
+    }
+
+    @Test
+    public void generatedProxyWithPrimitivesAndCheckedExceptions() throws Exception {
+        TxProxyFactoryBean factoryBean = factoryBean(true);
+        factoryBean.setTarget(new SimpleCalculator());
+        factoryBean.setServiceInterface(Calculator.class);
+        Calculator calculator = (Calculator) factoryBean.getObject();
+
+        assertThat(calculator.add(1, 2), is(3));
+        assertThat(calculator.multiply(Long.MAX_VALUE / 2, 2), is(Long.MAX_VALUE - 1));
+        assertThat(calculator.divide(1.0, 4.0), is(0.25));
+        assertThat(calculator.describe(1, 2L, 3.5), is("1,2,3.5"));
+        verify(transactionManager, times(4)).commit(status);
+
+        // 체크 예외는 그대로 던지고, 기본 롤백 규칙에 따라 롤백하지 않고 커밋한다
+        assertThrows(CalculationException.class, () -> calculator.divide(1.0, 0.0));
+        verify(transactionManager, times(5)).commit(status);
+        verify(transactionManager, never()).rollback(status);
+    }
+
+    @Test
+    public void generatedProxyForBootstrapInterface() throws Exception {
+        TxProxyFactoryBean factoryBean = factoryBean(true);
+        factoryBean.setTarget((IntSupplier) () -> 42);
+        factoryBean.setServiceInterface(IntSupplier.class);
+
+        IntSupplier supplier = (IntSupplier) factoryBean.getObject();
+
+        assertThat(Proxy.isProxyClass(supplier.getClass()), is(false));
+        assertThat(supplier.getAsInt(), is(42));
+        verify(transactionManager).commit(status);
+    }
+
+    public interface Calculator {
+        int add(int a, int b);
+
+        long multiply(long a, int b);
+
+        double divide(double a, double b) throws CalculationException;
+
+        default String describe(int a, long b, double c) {
+            return a + "," + b + "," + c;
+        }
+    }
+
+    public static class CalculationException extends Exception {
+    }
+
+    static class SimpleCalculator implements Calculator {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public long multiply(long a, int b) {
+            return a * b;
+        }
+
+        @Override
+        public double divide(double a, double b) throws CalculationException {
+            if (b == 0) throw new CalculationException();
+            return a / b;
+        }
+    }
+
+    private TxProxyFactoryBean factoryBean(boolean generateProxyClass) {
+        Properties attributes = new Properties();
+        attributes.setProperty("get*", "PROPAGATION_REQUIRED,readOnly");
+        attributes.setProperty("*", "PROPAGATION_REQUIRED");
+
+        TxProxyFactoryBean factoryBean = new TxProxyFactoryBean();
+        factoryBean.setTarget(target);
+        factoryBean.setTransactionManager(transactionManager);
+        factoryBean.setServiceInterface(UserService.class);
+        factoryBean.setTransactionAttributes(attributes);
+        factoryBean.setGenerateProxyClass(generateProxyClass);
+        return factoryBean;
+    }
+}
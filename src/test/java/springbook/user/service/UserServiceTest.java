@@ -26,10 +26,14 @@ import javax.sql.DataSource;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -102,6 +106,32 @@ public class UserServiceTest {
         assertThat(request.get(1), is(users.get(3).getEamil()));
     }
 
+    @Test
+    public void upgradeLevelsInBulk() {
+        List<User> users = new ArrayList<>(this.users);
+        users.add(new User("twostep", "정두단", "p6", Level.BASIC, MIN_LOGCOUNT_FOR_SILVER, MIN_RECOMMEND_FOR_GOLD, "twostep@dqdqdq.com"));
+
+        UserServiceImpl userServiceImpl = new UserServiceImpl();
+        MockUserDao mockUserDao = new MockUserDao(users);
+        userServiceImpl.setUserDao(mockUserDao);
+        MockMailSender mockMailSender = new MockMailSender();
+        userServiceImpl.setMailSender(mockMailSender);
+
+        userServiceImpl.upgradeLevelsInBulk();
+
+        // SILVER 를 먼저 올려야 BASIC 에서 SILVER 로 오른 사용자가 같은 실행에서 GOLD 까지 오르지 않는다
+        assertThat(mockUserDao.getUpgradedLevels(), is(Arrays.asList(Level.SILVER, Level.BASIC)));
+
+        List<User> updated = mockUserDao.getUpdated();
+        assertThat(updated.size(), is(3));
+        checkUserAndLevel(updated.get(0), "madnite1", Level.GOLD);
+        checkUserAndLevel(updated.get(1), "joytouch", Level.SILVER);
+        checkUserAndLevel(updated.get(2), "twostep", Level.SILVER);
+
+        List<String> request = mockMailSender.getRequests();
+        assertThat(request, is(Arrays.asList(users.get(3).getEamil(), users.get(1).getEamil(), users.get(5).getEamil())));
+    }
+
     @Test
     public void mockUpgradeLevels() throws Exception {
         UserServiceImpl userServiceImpl = new UserServiceImpl();
@@ -115,11 +145,9 @@ public class UserServiceTest {
 
         userServiceImpl.upgradeLevels();
 
-        verify(mockUserDao, times(2)).update(any(User.class));
-        verify(mockUserDao, times(2)).update(any(User.class));
-        verify(mockUserDao).update(users.get(1));
+        verify(mockUserDao, never()).update(any(User.class));
+        verify(mockUserDao).updateAll(Arrays.asList(users.get(1), users.get(3)));
         assertThat(users.get(1).getLevel(), is(Level.SILVER));
-        verify(mockUserDao).update(users.get(3));
         assertThat(users.get(3).getLevel(), is(Level.GOLD));
 
         ArgumentCaptor<SimpleMailMessage> mailMessageArg = ArgumentCaptor.forClass(SimpleMailMessage.class);
@@ -130,6 +158,49 @@ public class UserServiceTest {
 
     }
 
+    @Test
+    public void upgradeLevelsInChunks() throws Exception {
+        UserServiceImpl userServiceImpl = new UserServiceImpl();
+
+        MockUserDao mockUserDao = new MockUserDao(this.users);
+        userServiceImpl.setUserDao(mockUserDao);
+        userServiceImpl.setMailSender(new MockMailSender());
+        userServiceImpl.setTransactionManager(mock(PlatformTransactionManager.class));
+
+        MemoryUpgradeCheckpoint checkpoint = new MemoryUpgradeCheckpoint();
+        userServiceImpl.setUpgradeCheckpoint(checkpoint);
+        userServiceImpl.setUpgradeChunkSize(2);
+
+        userServiceImpl.upgradeLevelsInChunks();
+
+        List<User> updated = mockUserDao.getUpdated();
+        assertThat(updated.size(), is(2));
+        checkUserAndLevel(updated.get(0), "joytouch", Level.SILVER);
+        checkUserAndLevel(updated.get(1), "madnite1", Level.GOLD);
+        assertThat(checkpoint.load(), is(nullValue()));
+    }
+
+    @Test
+    public void upgradeLevelsInChunksResumesFromCheckpoint() throws Exception {
+        UserServiceImpl userServiceImpl = new UserServiceImpl();
+
+        MockUserDao mockUserDao = new MockUserDao(this.users);
+        userServiceImpl.setUserDao(mockUserDao);
+        userServiceImpl.setMailSender(new MockMailSender());
+        userServiceImpl.setTransactionManager(mock(PlatformTransactionManager.class));
+
+        MemoryUpgradeCheckpoint checkpoint = new MemoryUpgradeCheckpoint();
+        checkpoint.save("joytouch");
+        userServiceImpl.setUpgradeCheckpoint(checkpoint);
+        userServiceImpl.setUpgradeChunkSize(2);
+
+        userServiceImpl.upgradeLevelsInChunks();
+
+        List<User> updated = mockUserDao.getUpdated();
+        assertThat(updated.size(), is(1));
+        checkUserAndLevel(updated.get(0), "madnite1", Level.GOLD);
+    }
+
     private void checkUserAndLevel(User updated, String expectedId, Level expectedLevel) {
         assertThat(updated.getId(), is(expectedId));
         assertThat(updated.getLevel(), is(expectedLevel));
@@ -177,7 +248,9 @@ public class UserServiceTest {
 
         }
 
+        // joytouch 의 업그레이드는 madnite1 에서 실패하기 전에 이미 DB 에 반영됐으므로, 롤백되어야 원래 레벨로 남는다
         checkLevelUpgraded(users.get(1), false);
+        checkLevelUpgraded(users.get(3), false);
     }
 
     @Test
@@ -214,6 +287,7 @@ public class UserServiceTest {
     static class MockUserDao implements UserDao {
         private List<User> users;
         private List<User> updated = new ArrayList<>();
+        private List<Level> upgradedLevels = new ArrayList<>();
 
         private MockUserDao(List<User> users) {
             this.users = users;
@@ -223,16 +297,50 @@ public class UserServiceTest {
             return this.updated;
         }
 
+        public List<Level> getUpgradedLevels() {
+            return this.upgradedLevels;
+        }
+
         @Override
         public void update(User user) {
             updated.add(user);
         }
 
+        @Override
+        public void updateAll(Collection<User> users) {
+            updated.addAll(users);
+        }
+
         @Override
         public List<User> getAll() {
             return this.users;
         }
 
+        @Override
+        public List<User> getAllAfter(String lastId, int limit) {
+            return this.users.stream()
+                    .filter(user -> user.getId().compareTo(lastId) > 0)
+                    .sorted(Comparator.comparing(User::getId))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<User> upgradeLevels(Level level, Integer minLogin, Integer minRecommend) {
+            upgradedLevels.add(level);
+            List<User> upgraded = new ArrayList<>();
+            for (User user : this.users) {
+                if (user.getLevel() == level
+                        && (minLogin == null || user.getLogin() >= minLogin)
+                        && (minRecommend == null || user.getRecommend() >= minRecommend)) {
+                    user.upgradeLevel();
+                    upgraded.add(user);
+                }
+            }
+            updated.addAll(upgraded);
+            return upgraded;
+        }
+
         @Override
         public void deleteAll() {
             throw new UnsupportedOperationException();
@@ -253,6 +361,11 @@ public class UserServiceTest {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public void addAll(Collection<User> users) {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public User get(String id) {
             throw new UnsupportedOperationException();
@@ -63,6 +63,19 @@ public abstract class AbstractUpdatableSqlRegistryTest {
         checkFindResult("Modified1", "SQL2", "Modified3");
     }
 
+    @Test
+    public void updateMultiAllOrNothing() {
+        Map<String, String> sqlmap = new HashMap<>();
+        sqlmap.put("KEY1", "Modified1");
+        sqlmap.put("KEY9999!@#$", "Modified9999");
+
+        assertThrows(SqlUpdateFailureException.class, () -> {
+            sqlRegistry.updateSql(sqlmap);
+        });
+
+        checkFindResult("SQL1", "SQL2", "SQL3");
+    }
+
     @Test
     public void updateWithNotExistingKey() {
         assertThrows(SqlUpdateFailureException.class, () -> {
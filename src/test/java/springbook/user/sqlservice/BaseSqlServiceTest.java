@@ -0,0 +1,39 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BaseSqlServiceTest {
+    @Test
+    public void loadInChunks() {
+        List<Integer> chunkSizes = new ArrayList<>();
+        CopyOnWriteSqlRegistry sqlRegistry = new CopyOnWriteSqlRegistry() {
+            @Override
+            public void registerSql(Map<String, String> sqlmap) {
+                chunkSizes.add(sqlmap.size());
+                super.registerSql(sqlmap);
+            }
+        };
+
+        BaseSqlService sqlService = new BaseSqlService();
+        sqlService.setSqlRegistry(sqlRegistry);
+        sqlService.setLoadChunkSize(2);
+        sqlService.setSqlReader(registry -> {
+            for (int i = 1; i <= 5; i++) {
+                registry.registerSql("KEY" + i, "SQL" + i);
+            }
+        });
+        sqlService.loadSql();
+
+        assertThat(chunkSizes.toString(), is("[2, 2, 1]"));
+        for (int i = 1; i <= 5; i++) {
+            assertThat(sqlService.getSql("KEY" + i), is("SQL" + i));
+        }
+    }
+}
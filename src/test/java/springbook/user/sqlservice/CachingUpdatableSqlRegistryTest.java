@@ -0,0 +1,67 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+import springbook.user.sqlservice.updatable.CachingUpdatableSqlRegistry;
+import springbook.user.sqlservice.updatable.EmbeddedDbSqlRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CachingUpdatableSqlRegistryTest extends AbstractUpdatableSqlRegistryTest {
+    EmbeddedDatabase db;
+
+    @Override
+    protected UpdatableSqlRegistry createUpdatableSqlRegistry() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .addScript("/schema.sql")
+                .build();
+
+        EmbeddedDbSqlRegistry embeddedDbSqlRegistry = new EmbeddedDbSqlRegistry();
+        embeddedDbSqlRegistry.setDataSource(db);
+
+        CachingUpdatableSqlRegistry cachingSqlRegistry = new CachingUpdatableSqlRegistry();
+        cachingSqlRegistry.setSqlRegistry(embeddedDbSqlRegistry);
+        return cachingSqlRegistry;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void handleSeesUpdates() {
+        SqlHandle handle1 = ((SqlHandleRegistry) sqlRegistry).findSqlHandle("KEY1");
+        SqlHandle handle2 = ((SqlHandleRegistry) sqlRegistry).findSqlHandle("KEY2");
+
+        sqlRegistry.updateSql("KEY2", "Modified2");
+        assertThat(handle2.getSql(), is("Modified2"));
+
+        Map<String, String> sqlmap = new HashMap<>();
+        sqlmap.put("KEY1", "Modified1");
+        sqlRegistry.updateSql(sqlmap);
+        assertThat(handle1.getSql(), is("Modified1"));
+    }
+
+    @Test
+    public void handleSeesBulkRegistration() {
+        SqlHandle handle2 = ((SqlHandleRegistry) sqlRegistry).findSqlHandle("KEY2");
+
+        Map<String, String> sqlmap = new HashMap<>();
+        sqlmap.put("KEY2", "Modified2");
+        sqlmap.put("KEY4", "SQL4");
+        ((BulkSqlRegistry) sqlRegistry).registerSql(sqlmap);
+
+        assertThat(handle2.getSql(), is("Modified2"));
+        assertThat(sqlRegistry.findSql("KEY4"), is("SQL4"));
+    }
+}
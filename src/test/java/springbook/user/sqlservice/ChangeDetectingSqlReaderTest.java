@@ -0,0 +1,151 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import springbook.user.sqlservice.updatable.ChangeDetectingSqlReader;
+import springbook.user.sqlservice.updatable.EmbeddedDbSqlRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChangeDetectingSqlReaderTest {
+    @TempDir
+    File tempDir;
+
+    EmbeddedDatabase db;
+    File sqlmapFile;
+    ChangeDetectingSqlReader sqlReader;
+    EmbeddedDbSqlRegistry sqlRegistry;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .addScript("/schema.sql")
+                .build();
+        sqlRegistry = new EmbeddedDbSqlRegistry();
+        sqlRegistry.setDataSource(db);
+
+        sqlmapFile = new File(tempDir, "sqlmap.xml");
+        writeSqlmap("select * from users where id = ?");
+
+        StaxXmlSqlReader xmlSqlReader = new StaxXmlSqlReader();
+        xmlSqlReader.setSqlmap(new FileSystemResource(sqlmapFile));
+
+        sqlReader = new ChangeDetectingSqlReader();
+        sqlReader.setSqlReader(xmlSqlReader);
+        sqlReader.setSqlmaps(new FileSystemResource(sqlmapFile));
+        sqlReader.setDataSource(db);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void skipUnchangedSource() {
+        sqlReader.read(sqlRegistry);
+        assertThat(sqlReader.isLastReadSkipped(), is(false));
+
+        sqlRegistry.updateSql("userGet", "select id from users where id = ?");
+
+        sqlReader.read(sqlRegistry);
+        assertThat(sqlReader.isLastReadSkipped(), is(true));
+        assertThat(sqlRegistry.findSql("userGet"), is("select id from users where id = ?"));
+    }
+
+    @Test
+    public void reloadChangedSource() throws IOException {
+        sqlReader.read(sqlRegistry);
+
+        writeSqlmap("select name from users where id = ?");
+        sqlReader.read(sqlRegistry);
+
+        assertThat(sqlReader.isLastReadSkipped(), is(false));
+        assertThat(sqlRegistry.findSql("userGet"), is("select name from users where id = ?"));
+    }
+
+    @Test
+    public void deleteRemovedKeys() throws IOException {
+        writeSqlmapBody("<sql key=\"userGet\">select * from users where id = ?</sql>"
+                + "<sql key=\"userGetAll\">select * from users order by id</sql>");
+        sqlReader.read(sqlRegistry);
+        assertThat(sqlRegistry.findSql("userGetAll"), is("select * from users order by id"));
+
+        writeSqlmap("select * from users where id = ?");
+        sqlReader.read(sqlRegistry);
+
+        assertThat(sqlRegistry.findSql("userGet"), is("select * from users where id = ?"));
+        assertThrows(SqlNotFoundException.class, () -> sqlRegistry.findSql("userGetAll"));
+    }
+
+    @Test
+    public void skipReadAfterRestartWithFileStore() {
+        String url = "jdbc:h2:file:" + new File(tempDir, "sqlmap").getAbsolutePath();
+
+        SingleConnectionDataSource first = fileStore(url);
+        ChangeDetectingSqlReader firstReader = changeDetectingSqlReader(first);
+        firstReader.read(registry(first));
+        assertThat(firstReader.isLastReadSkipped(), is(false));
+        first.destroy();
+
+        SingleConnectionDataSource second = fileStore(url);
+        ChangeDetectingSqlReader secondReader = changeDetectingSqlReader(second);
+        EmbeddedDbSqlRegistry secondRegistry = registry(second);
+        secondReader.read(secondRegistry);
+
+        assertThat(secondReader.isLastReadSkipped(), is(true));
+        assertThat(secondRegistry.findSql("userGet"), is("select * from users where id = ?"));
+        second.destroy();
+    }
+
+    // 애플리케이션을 다시 띄우는 것처럼 매번 새 커넥션으로 파일을 연다. 커넥션을 닫으면 H2 가 파일을 닫는다
+    private SingleConnectionDataSource fileStore(String url) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url, "sa", "", true);
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("/schema-persistent.sql")), dataSource);
+        return dataSource;
+    }
+
+    private ChangeDetectingSqlReader changeDetectingSqlReader(SingleConnectionDataSource dataSource) {
+        StaxXmlSqlReader xmlSqlReader = new StaxXmlSqlReader();
+        xmlSqlReader.setSqlmap(new FileSystemResource(sqlmapFile));
+
+        ChangeDetectingSqlReader reader = new ChangeDetectingSqlReader();
+        reader.setSqlReader(xmlSqlReader);
+        reader.setSqlmaps(new FileSystemResource(sqlmapFile));
+        reader.setDataSource(dataSource);
+        return reader;
+    }
+
+    private EmbeddedDbSqlRegistry registry(SingleConnectionDataSource dataSource) {
+        EmbeddedDbSqlRegistry registry = new EmbeddedDbSqlRegistry();
+        registry.setDataSource(dataSource);
+        return registry;
+    }
+
+    private void writeSqlmap(String sql) throws IOException {
+        writeSqlmapBody("<sql key=\"userGet\">" + sql + "</sql>");
+    }
+
+    private void writeSqlmapBody(String body) throws IOException {
+        String xml = "<sqlmap xmlns=\"http://www.epril.com/sqlmap\">" + body + "</sqlmap>";
+        Files.write(sqlmapFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,11 @@
+package springbook.user.sqlservice;
+
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+
+public class CopyOnWriteSqlRegistryTest extends AbstractUpdatableSqlRegistryTest {
+
+    @Override
+    protected UpdatableSqlRegistry createUpdatableSqlRegistry() {
+        return new CopyOnWriteSqlRegistry();
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
@@ -13,9 +14,21 @@ import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
 import springbook.user.dao.BeanFactory;
 import springbook.user.sqlservice.updatable.EmbeddedDbSqlRegistry;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class EmbeddedDbSqlRegistryTest extends AbstractUpdatableSqlRegistryTest {
@@ -56,4 +69,100 @@ public class EmbeddedDbSqlRegistryTest extends AbstractUpdatableSqlRegistryTest
 
     }
 
+    @Test
+    public void registerBulk() {
+        Map<String, String> sqlmap = new HashMap<>();
+        sqlmap.put("KEY2", "Modified2");
+        sqlmap.put("KEY4", "SQL4");
+
+        ((BulkSqlRegistry) sqlRegistry).registerSql(sqlmap);
+
+        checkFindResult("SQL1", "Modified2", "SQL3");
+        assertThat(sqlRegistry.findSql("KEY4"), is("SQL4"));
+    }
+
+    @Test
+    public void registerExistingKey() {
+        sqlRegistry.registerSql("KEY1", "Modified1");
+        checkFindResult("Modified1", "SQL2", "SQL3");
+    }
+
+    @Test
+    public void mergeOnH2() {
+        EmbeddedDatabase h2 = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("/schema.sql")
+                .build();
+        try {
+            EmbeddedDbSqlRegistry h2SqlRegistry = new EmbeddedDbSqlRegistry();
+            h2SqlRegistry.setDataSource(h2);
+
+            Map<String, String> sqlmap = new HashMap<>();
+            sqlmap.put("KEY1", "SQL1");
+            sqlmap.put("KEY2", "SQL2");
+            h2SqlRegistry.registerSql(sqlmap);
+            sqlmap.put("KEY2", "Modified2");
+            h2SqlRegistry.registerSql(sqlmap);
+
+            assertThat(h2SqlRegistry.findSql("KEY1"), is("SQL1"));
+            assertThat(h2SqlRegistry.findSql("KEY2"), is("Modified2"));
+        } finally {
+            h2.shutdown();
+        }
+    }
+
+    @Test
+    public void batchWithoutUpdateCounts() {
+        EmbeddedDbSqlRegistry noInfoSqlRegistry = new EmbeddedDbSqlRegistry();
+        noInfoSqlRegistry.setDataSource(noBatchUpdateCounts(db));
+
+        Map<String, String> sqlmap = new HashMap<>();
+        sqlmap.put("KEY2", "Modified2");
+        sqlmap.put("KEY4", "SQL4");
+        noInfoSqlRegistry.registerSql(sqlmap);
+
+        checkFindResult("SQL1", "Modified2", "SQL3");
+        assertThat(sqlRegistry.findSql("KEY4"), is("SQL4"));
+
+        Map<String, String> missing = new HashMap<>();
+        missing.put("KEY1", "Modified1");
+        missing.put("KEY9999!@#$", "Modified9999");
+        assertThrows(SqlUpdateFailureException.class, () -> noInfoSqlRegistry.updateSql(missing));
+        checkFindResult("SQL1", "Modified2", "SQL3");
+    }
+
+    // 배치 결과로 바뀐 행 수 대신 SUCCESS_NO_INFO 를 돌려주는 드라이버처럼 동작하게 한다
+    private DataSource noBatchUpdateCounts(DataSource dataSource) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                        (proxy, method, args) -> {
+                            Object result = invoke(method, connection, args);
+                            if (!(result instanceof PreparedStatement)) return result;
+
+                            PreparedStatement statement = (PreparedStatement) result;
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{PreparedStatement.class},
+                                    (statementProxy, statementMethod, statementArgs) -> {
+                                        Object statementResult = invoke(statementMethod, statement, statementArgs);
+                                        if (!"executeBatch".equals(statementMethod.getName())) return statementResult;
+
+                                        int[] counts = new int[((int[]) statementResult).length];
+                                        Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                                        return counts;
+                                    });
+                        });
+            }
+        };
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
 }
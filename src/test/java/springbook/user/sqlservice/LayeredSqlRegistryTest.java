@@ -0,0 +1,69 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LayeredSqlRegistryTest {
+    LayeredSqlRegistry sqlRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        sqlRegistry = new LayeredSqlRegistry();
+        sqlRegistry.registerSql("KEY1", "SQL1");
+        sqlRegistry.registerSql("KEY2", "SQL2");
+        sqlRegistry.registerSql("tenantA", "KEY2", "SQL2-A");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SqlTenantContext.clear();
+    }
+
+    @Test
+    public void withoutTenant() {
+        assertThat(sqlRegistry.findSql("KEY1"), is("SQL1"));
+        assertThat(sqlRegistry.findSql("KEY2"), is("SQL2"));
+    }
+
+    @Test
+    public void tenantOverride() {
+        SqlTenantContext.setTenant("tenantA");
+        assertThat(sqlRegistry.findSql("KEY1"), is("SQL1"));
+        assertThat(sqlRegistry.findSql("KEY2"), is("SQL2-A"));
+
+        SqlTenantContext.setTenant("tenantB");
+        assertThat(sqlRegistry.findSql("KEY2"), is("SQL2"));
+    }
+
+    @Test
+    public void registerWithTenantContext() {
+        SqlTenantContext.setTenant("tenantB");
+        sqlRegistry.registerSql("KEY1", "SQL1-B");
+
+        assertThat(sqlRegistry.findSql("KEY1"), is("SQL1-B"));
+        assertThat(sqlRegistry.lookupSql("tenantA", "KEY1"), is(Optional.of("SQL1")));
+        assertThat(sqlRegistry.getOverrideCount(), is(2));
+    }
+
+    @Test
+    public void removeOverride() {
+        sqlRegistry.removeOverride("tenantA", "KEY2");
+
+        assertThat(sqlRegistry.lookupSql("tenantA", "KEY2"), is(Optional.of("SQL2")));
+        assertThat(sqlRegistry.getOverrideCount(), is(0));
+    }
+
+    @Test
+    public void unknownKey() {
+        SqlTenantContext.setTenant("tenantA");
+        assertThat(sqlRegistry.lookupSql("KEY9999"), is(Optional.empty()));
+        assertThrows(SqlNotFoundException.class, () -> sqlRegistry.findSql("KEY9999"));
+    }
+}
@@ -0,0 +1,27 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.Test;
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PackedSqlRegistryTest extends AbstractUpdatableSqlRegistryTest {
+
+    @Override
+    protected UpdatableSqlRegistry createUpdatableSqlRegistry() {
+        return new PackedSqlRegistry();
+    }
+
+    @Test
+    public void deduplicateSql() {
+        PackedSqlRegistry packed = (PackedSqlRegistry) sqlRegistry;
+        for (int i = 0; i < 1000; i++) {
+            packed.registerSql("TENANT" + i + "_GET", "select * from users where id = ?");
+        }
+
+        assertThat(packed.size(), is(1003));
+        assertThat(packed.getDistinctSqlCount(), is(4));
+        assertThat(packed.findSql("TENANT999_GET"), is("select * from users where id = ?"));
+    }
+}
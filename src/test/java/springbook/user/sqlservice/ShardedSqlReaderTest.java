@@ -0,0 +1,83 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardedSqlReaderTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void mergeShards() throws IOException {
+        shard("users.xml", "userGet", "userGetAll");
+        shard("billing.xml", "billGet");
+        shard("audit.xml", "auditAdd", "auditGet");
+
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setForkJoinPool(new ForkJoinPool(2));
+        sqlReader.setSqlmapLocations("file:" + tempDir.getAbsolutePath() + "/*.xml");
+
+        CollectingSqlRegistry sqlRegistry = new CollectingSqlRegistry();
+        sqlReader.read(sqlRegistry);
+
+        Map<String, String> sqlmap = sqlRegistry.getSqlmap();
+        assertThat(sqlmap.size(), is(5));
+        assertThat(sqlmap.get("billGet"), is("select billGet"));
+        assertThat(sqlmap.keySet().iterator().next(), is("auditAdd"));
+    }
+
+    @Test
+    public void emptySqlmaps() {
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setSqlmaps();
+
+        assertThrows(IllegalArgumentException.class, () -> sqlReader.read(new CollectingSqlRegistry()));
+    }
+
+    @Test
+    public void duplicateKeyAcrossShards() throws IOException {
+        File users = shard("users.xml", "userGet");
+        File legacy = shard("legacy.xml", "userGet");
+
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setSqlmaps(new FileSystemResource(users), new FileSystemResource(legacy));
+
+        CollectingSqlRegistry sqlRegistry = new CollectingSqlRegistry();
+        assertThrows(DuplicateSqlKeyException.class, () -> sqlReader.read(sqlRegistry));
+        assertThat(sqlRegistry.getSqlmap().size(), is(0));
+    }
+
+    @Test
+    public void duplicateKeyInShard() throws IOException {
+        File users = shard("users.xml", "userGet", "userGet");
+
+        ShardedSqlReader sqlReader = new ShardedSqlReader();
+        sqlReader.setSqlmaps(new FileSystemResource(users));
+
+        assertThrows(DuplicateSqlKeyException.class, () -> sqlReader.read(new CollectingSqlRegistry()));
+    }
+
+    private File shard(String name, String... keys) throws IOException {
+        StringBuilder xml = new StringBuilder("<sqlmap xmlns=\"http://www.epril.com/sqlmap\">");
+        for (String key : keys) {
+            xml.append("<sql key=\"").append(key).append("\">select ").append(key).append("</sql>");
+        }
+        xml.append("</sqlmap>");
+
+        File file = new File(tempDir, name);
+        Files.write(file.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,205 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import springbook.user.sqlservice.updatable.SqlmapReloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SqlmapReloaderTest {
+    @TempDir
+    File tempDir;
+
+    CopyOnWriteSqlRegistry sqlRegistry;
+    SqlmapReloader sqlmapReloader;
+    Map<String, String> sqlmap;
+
+    @BeforeEach
+    public void setUp() {
+        sqlmap = new LinkedHashMap<>();
+        sqlmap.put("KEY1", "SQL1");
+        sqlmap.put("KEY2", "SQL2");
+
+        sqlRegistry = new CopyOnWriteSqlRegistry();
+        sqlmapReloader = new SqlmapReloader();
+        sqlmapReloader.setSqlRegistry(sqlRegistry);
+        sqlmapReloader.setSqlReader(registry -> {
+            for (Map.Entry<String, String> entry : sqlmap.entrySet()) {
+                registry.registerSql(entry.getKey(), entry.getValue());
+            }
+        });
+        sqlmapReloader.reload();
+    }
+
+    @Test
+    public void reloadAppliesChangedAndAddedKeys() {
+        sqlmap.put("KEY2", "Modified2");
+        sqlmap.put("KEY3", "SQL3");
+
+        sqlmapReloader.reload();
+
+        assertThat(sqlRegistry.findSql("KEY1"), is("SQL1"));
+        assertThat(sqlRegistry.findSql("KEY2"), is("Modified2"));
+        assertThat(sqlRegistry.findSql("KEY3"), is("SQL3"));
+        assertThat(sqlmapReloader.getReloadCount(), is(2L));
+    }
+
+    @Test
+    public void failedReloadIsRecorded() {
+        sqlmapReloader.setSqlReader(registry -> {
+            throw new IllegalArgumentException("sqlmap.xml 을 가져올 수 없습니다.");
+        });
+
+        sqlmapReloader.reload();
+
+        assertThat(sqlmapReloader.getFailureCount(), is(1L));
+        assertThat(sqlmapReloader.getLastFailure(), is(notNullValue()));
+        assertThat(sqlRegistry.findSql("KEY2"), is("SQL2"));
+    }
+
+    @Test
+    public void reloadAppliesChangesInOneBulkRegistration() {
+        Map<String, String> bulk = new LinkedHashMap<>();
+        RecordingBulkRegistry bulkRegistry = new RecordingBulkRegistry(bulk);
+        sqlmapReloader.setSqlRegistry(bulkRegistry);
+
+        sqlmap.put("KEY2", "Modified2");
+        sqlmap.put("KEY3", "SQL3");
+        sqlmapReloader.reload();
+
+        assertThat(bulkRegistry.bulkCount, is(1));
+        assertThat(bulk.toString(), is("{KEY2=Modified2, KEY3=SQL3}"));
+    }
+
+    @Test
+    public void watchReloadsOnceAfterDebounce() throws IOException, InterruptedException {
+        File file = new File(tempDir, "sqlmap.xml");
+        writeSqlmap(file, "SQL1");
+
+        StaxXmlSqlReader fileReader = new StaxXmlSqlReader();
+        fileReader.setSqlmap(new FileSystemResource(file));
+
+        SqlmapReloader watching = new SqlmapReloader();
+        watching.setSqlReader(fileReader);
+        watching.setSqlRegistry(sqlRegistry);
+        watching.setSqlmap(new FileSystemResource(file));
+        watching.setDebounceMillis(500);
+        watching.start();
+        try {
+            // 디바운스 시간 안에 여러 번 쓰면 마지막 내용으로 한 번만 다시 읽는다
+            writeSqlmap(file, "Modified1");
+            writeSqlmap(file, "Modified2");
+            writeSqlmap(file, "Modified3");
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (watching.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Thread.sleep(1000);
+
+            assertThat(watching.getReloadCount(), is(1L));
+            assertThat(sqlRegistry.findSql("KEY1"), is("Modified3"));
+        } finally {
+            watching.stop();
+        }
+    }
+
+    @Test
+    public void firstReloadComparesWithRegisteredSql() throws IOException {
+        File file = new File(tempDir, "sqlmap.xml");
+        writeSqlmap(file, "SQL1");
+
+        // 레지스트리는 소스 파일과 다른 내용(컴파일된 sqlmap, 실행 중에 고친 SQL)으로 채워져 있다
+        CopyOnWriteSqlRegistry registered = new CopyOnWriteSqlRegistry();
+        registered.registerSql("KEY1", "Stale1");
+
+        StaxXmlSqlReader fileReader = new StaxXmlSqlReader();
+        fileReader.setSqlmap(new FileSystemResource(file));
+
+        SqlmapReloader watching = new SqlmapReloader();
+        watching.setSqlReader(fileReader);
+        watching.setSqlRegistry(registered);
+        watching.setSqlmap(new FileSystemResource(file));
+        watching.start();
+        try {
+            watching.reload();
+            assertThat(registered.findSql("KEY1"), is("SQL1"));
+        } finally {
+            watching.stop();
+        }
+    }
+
+    @Test
+    public void watchEveryShard() throws IOException, InterruptedException {
+        File userShard = new File(new File(tempDir, "user"), "sqlmap.xml");
+        File orderShard = new File(new File(tempDir, "order"), "sqlmap.xml");
+        userShard.getParentFile().mkdirs();
+        orderShard.getParentFile().mkdirs();
+        writeSqlmap(userShard, "KEY1", "SQL1");
+        writeSqlmap(orderShard, "KEY2", "SQL2");
+
+        ShardedSqlReader shardedSqlReader = new ShardedSqlReader();
+        shardedSqlReader.setSqlmaps(new FileSystemResource(userShard), new FileSystemResource(orderShard));
+
+        SqlmapReloader watching = new SqlmapReloader();
+        watching.setSqlReader(shardedSqlReader);
+        watching.setSqlRegistry(sqlRegistry);
+        watching.setSqlmaps(new FileSystemResource(userShard), new FileSystemResource(orderShard));
+        watching.setDebounceMillis(100);
+        watching.start();
+        try {
+            writeSqlmap(orderShard, "KEY2", "Modified2");
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (watching.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertThat(watching.getReloadCount(), is(1L));
+            assertThat(sqlRegistry.findSql("KEY2"), is("Modified2"));
+        } finally {
+            watching.stop();
+        }
+    }
+
+    private void writeSqlmap(File file, String sql) throws IOException {
+        writeSqlmap(file, "KEY1", sql);
+    }
+
+    private void writeSqlmap(File file, String key, String sql) throws IOException {
+        String xml = "<sqlmap xmlns=\"http://www.epril.com/sqlmap\"><sql key=\"" + key + "\">" + sql + "</sql></sqlmap>";
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static class RecordingBulkRegistry extends CopyOnWriteSqlRegistry {
+        final Map<String, String> bulk;
+        int bulkCount;
+
+        RecordingBulkRegistry(Map<String, String> bulk) {
+            this.bulk = bulk;
+        }
+
+        @Override
+        public void registerSql(Map<String, String> sqlmap) {
+            bulkCount++;
+            bulk.putAll(sqlmap);
+            super.registerSql(sqlmap);
+        }
+
+        @Override
+        public void updateSql(Map<String, String> sqlmap) throws SqlUpdateFailureException {
+            throw new AssertionError("바뀐 키도 registerSql 로 함께 반영해야 합니다.");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StaxXmlSqlReaderTest {
+    @Test
+    public void readSqlmap() {
+        StaxXmlSqlReader sqlReader = new StaxXmlSqlReader();
+        sqlReader.setSqlmap(new ClassPathResource("/sqlmap.xml"));
+
+        CollectingSqlRegistry sqlRegistry = new CollectingSqlRegistry();
+        sqlReader.read(sqlRegistry);
+
+        Map<String, String> sqlmap = sqlRegistry.getSqlmap();
+        assertThat(sqlmap.size(), is(9));
+        assertThat(sqlmap.get("userGet"), is("select * from users where id = ?"));
+        assertThat(sqlmap.get("userGetAllAfter"), is("select * from users where id > ? order by id limit ?"));
+    }
+}
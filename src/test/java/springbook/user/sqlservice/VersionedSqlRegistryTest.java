@@ -0,0 +1,199 @@
+package springbook.user.sqlservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import springbook.issuetracker.sqlservice.UpdatableSqlRegistry;
+import springbook.user.sqlservice.updatable.VersionedSqlRegistry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VersionedSqlRegistryTest extends AbstractUpdatableSqlRegistryTest {
+    EmbeddedDatabase db;
+
+    @Override
+    protected UpdatableSqlRegistry createUpdatableSqlRegistry() {
+        return new VersionedSqlRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (db != null) db.shutdown();
+    }
+
+    @Test
+    @Override
+    public void updateMultiAllOrNothing() {
+        super.updateMultiAllOrNothing();
+        assertThat(versioned().getActiveVersion(), is(0L));
+    }
+
+    @Test
+    public void rollback() {
+        sqlRegistry.updateSql("KEY1", "Modified1");
+        sqlRegistry.updateSql("KEY2", "Modified2");
+        assertThat(versioned().getActiveVersion(), is(2L));
+        checkFindResult("Modified1", "Modified2", "SQL3");
+
+        assertThat(versioned().rollback(), is(1L));
+        checkFindResult("Modified1", "SQL2", "SQL3");
+
+        assertThat(versioned().rollback(), is(0L));
+        checkFindResult("SQL1", "SQL2", "SQL3");
+
+        assertThrows(SqlUpdateFailureException.class, () -> versioned().rollback());
+    }
+
+    @Test
+    public void publishAndActivate() {
+        Map<String, String> sqlmap = new HashMap<>(versioned().getSqlmap(0));
+        sqlmap.put("KEY3", "Modified3");
+
+        long version = versioned().publish(sqlmap);
+        checkFindResult("SQL1", "SQL2", "SQL3");
+
+        versioned().activate(version);
+        checkFindResult("SQL1", "SQL2", "Modified3");
+        assertThat(versioned().getSqlmap(0).get("KEY3"), is("SQL3"));
+    }
+
+    @Test
+    public void keepMaxVersions() {
+        versioned().setMaxVersions(2);
+        for (int i = 1; i <= 5; i++) {
+            sqlRegistry.updateSql("KEY1", "Modified" + i);
+        }
+
+        assertThat(versioned().getVersions(), is(Arrays.asList(4L, 5L)));
+        assertThat(versioned().rollback(), is(4L));
+        assertThrows(SqlUpdateFailureException.class, () -> versioned().rollback());
+    }
+
+    @Test
+    public void persistVersions() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .addScript("/schema.sql")
+                .build();
+        versioned().setDataSource(db);
+
+        sqlRegistry.updateSql("KEY1", "Modified1");
+        sqlRegistry.updateSql("KEY2", "Modified2");
+        versioned().rollback();
+
+        VersionedSqlRegistry restored = new VersionedSqlRegistry();
+        restored.setDataSource(db);
+        restored.loadVersions();
+
+        assertThat(restored.getVersions(), is(Arrays.asList(0L, 1L, 2L)));
+        assertThat(restored.getActiveVersion(), is(1L));
+        assertThat(restored.findSql("KEY1"), is("Modified1"));
+        assertThat(restored.findSql("KEY2"), is("SQL2"));
+    }
+
+    @Test
+    public void persistLongSql() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .addScript("/schema.sql")
+                .build();
+        versioned().setDataSource(db);
+
+        StringBuilder longSql = new StringBuilder("select id, name, password, level, login, recommend, email from users where id in (");
+        for (int i = 0; i < 50; i++) {
+            longSql.append(i == 0 ? "?" : ", ?");
+        }
+        longSql.append(") order by id");
+        assertThat(longSql.length() > 100, is(true));
+
+        sqlRegistry.updateSql("KEY1", longSql.toString());
+
+        VersionedSqlRegistry restored = new VersionedSqlRegistry();
+        restored.setDataSource(db);
+        restored.loadVersions();
+
+        assertThat(restored.findSql("KEY1"), is(longSql.toString()));
+    }
+
+    @Test
+    public void publishAfterRestartWithoutLoad() {
+        versioned().setDataSource(createDatabase());
+        sqlRegistry.updateSql("KEY1", "Modified1");
+        sqlRegistry.updateSql("KEY2", "Modified2");
+
+        VersionedSqlRegistry restarted = new VersionedSqlRegistry();
+        restarted.registerSql("KEY1", "SQL1");
+        restarted.setDataSource(db);
+        restarted.updateSql("KEY1", "Modified3");
+
+        assertThat(restarted.getActiveVersion(), is(3L));
+
+        VersionedSqlRegistry restored = new VersionedSqlRegistry();
+        restored.setDataSource(db);
+        restored.loadVersions();
+        assertThat(restored.getVersions(), is(Arrays.asList(0L, 1L, 2L, 3L)));
+        assertThat(restored.findSql("KEY1"), is("Modified3"));
+    }
+
+    @Test
+    public void loadVersionsKeepsNewSqlmapKeys() {
+        versioned().setDataSource(createDatabase());
+        sqlRegistry.updateSql("KEY1", "Modified1");
+
+        // 버전을 저장한 뒤 sqlmap 파일에 KEY4 가 추가됐다
+        VersionedSqlRegistry restored = new VersionedSqlRegistry();
+        restored.setDataSource(db);
+        restored.registerSql("KEY1", "SQL1");
+        restored.registerSql("KEY2", "SQL2");
+        restored.registerSql("KEY3", "SQL3");
+        restored.registerSql("KEY4", "SQL4");
+        restored.loadVersions();
+
+        assertThat(restored.getActiveVersion(), is(1L));
+        assertThat(restored.findSql("KEY1"), is("Modified1"));
+        assertThat(restored.findSql("KEY4"), is("SQL4"));
+    }
+
+    @Test
+    public void loadVersionsEvictsOldVersions() {
+        versioned().setDataSource(createDatabase());
+        for (int i = 1; i <= 4; i++) {
+            sqlRegistry.updateSql("KEY1", "Modified" + i);
+        }
+        versioned().rollback();
+
+        VersionedSqlRegistry restored = new VersionedSqlRegistry();
+        restored.setMaxVersions(2);
+        restored.setDataSource(db);
+        restored.loadVersions();
+
+        assertThat(restored.getActiveVersion(), is(3L));
+        assertThat(restored.getVersions(), is(Arrays.asList(3L, 4L)));
+        assertThat(restored.findSql("KEY1"), is("Modified3"));
+
+        VersionedSqlRegistry reloaded = new VersionedSqlRegistry();
+        reloaded.setDataSource(db);
+        reloaded.loadVersions();
+        assertThat(reloaded.getVersions(), is(Arrays.asList(0L, 3L, 4L)));
+    }
+
+    private EmbeddedDatabase createDatabase() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .addScript("/schema.sql")
+                .build();
+        return db;
+    }
+
+    private VersionedSqlRegistry versioned() {
+        return (VersionedSqlRegistry) sqlRegistry;
+    }
+}
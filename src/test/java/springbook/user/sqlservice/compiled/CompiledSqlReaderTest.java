@@ -0,0 +1,96 @@
+package springbook.user.sqlservice.compiled;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import springbook.user.sqlservice.CollectingSqlRegistry;
+import springbook.user.sqlservice.SqlReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompiledSqlReaderTest {
+    @TempDir
+    File tempDir;
+
+    File compiled;
+    CompiledSqlReader sqlReader;
+    boolean fellBack;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        compiled = new File(tempDir, "sqlmap.sqlmapc");
+        SqlmapCompiler.compile(new ClassPathResource("/sqlmap.xml"), compiled);
+
+        sqlReader = new CompiledSqlReader();
+        sqlReader.setCompiledSqlmap(new FileSystemResource(compiled));
+        sqlReader.setSqlmap(new ClassPathResource("/sqlmap.xml"));
+        SqlReader xmlSqlReader = sqlRegistry -> {
+            fellBack = true;
+            sqlRegistry.registerSql("fallback", "select 1");
+        };
+        sqlReader.setFallbackSqlReader(xmlSqlReader);
+    }
+
+    @Test
+    public void readCompiled() {
+        Map<String, String> sqlmap = read();
+
+        assertThat(fellBack, is(false));
+        assertThat(sqlmap.size(), is(9));
+        assertThat(sqlmap.get("userGet"), is("select * from users where id = ?"));
+    }
+
+    @Test
+    public void fallBackWhenMissing() {
+        compiled.delete();
+
+        read();
+
+        assertThat(fellBack, is(true));
+    }
+
+    @Test
+    public void fallBackWhenStale() throws IOException {
+        File source = new File(tempDir, "sqlmap.xml");
+        Files.write(source.toPath(), ("<sqlmap xmlns=\"http://www.epril.com/sqlmap\">"
+                + "<sql key=\"userGet\">select id from users where id = ?</sql></sqlmap>").getBytes(StandardCharsets.UTF_8));
+        sqlReader.setSqlmap(new FileSystemResource(source));
+
+        read();
+
+        assertThat(fellBack, is(true));
+    }
+
+    @Test
+    public void fallBackWhenCorrupt() throws IOException {
+        long checksum = SqlmapBinaryFormat.checksum(new ClassPathResource("/sqlmap.xml"));
+        try (OutputStream os = new FileOutputStream(compiled)) {
+            SqlmapBinaryFormat.write(Collections.singletonMap("userGet", "select * from users where id = ?"), checksum, os);
+        }
+        byte[] bytes = Files.readAllBytes(compiled.toPath());
+        Files.write(compiled.toPath(), Arrays.copyOf(bytes, bytes.length - 5));
+
+        read();
+
+        assertThat(fellBack, is(true));
+    }
+
+    private Map<String, String> read() {
+        CollectingSqlRegistry sqlRegistry = new CollectingSqlRegistry();
+        sqlReader.read(sqlRegistry);
+        return sqlRegistry.getSqlmap();
+    }
+}
@@ -0,0 +1,85 @@
+package springbook.user.sqlservice.compiled;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import springbook.user.sqlservice.BaseSqlService;
+import springbook.user.sqlservice.CollectingSqlRegistry;
+import springbook.user.sqlservice.SqlNotFoundException;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedSqlRegistryTest {
+    @TempDir
+    File tempDir;
+
+    File compiled;
+    MappedSqlRegistry sqlRegistry;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        compiled = new File(tempDir, "sqlmap.sqlmapc");
+        SqlmapCompiler.compile(new ClassPathResource("/sqlmap.xml"), compiled);
+
+        sqlRegistry = new MappedSqlRegistry();
+        sqlRegistry.setCompiledSqlmap(new FileSystemResource(compiled));
+        sqlRegistry.setSqlmap(new ClassPathResource("/sqlmap.xml"));
+    }
+
+    @Test
+    public void decodeOnFirstFind() {
+        load();
+
+        assertThat(sqlRegistry.getIndexedCount(), is(9));
+        assertThat(sqlRegistry.getDecodedCount(), is(0));
+
+        assertThat(sqlRegistry.findSql("userGet"), is("select * from users where id = ?"));
+        assertThat(sqlRegistry.findSql("userGet"), is("select * from users where id = ?"));
+        assertThat(sqlRegistry.getDecodedCount(), is(1));
+
+        assertThrows(SqlNotFoundException.class, () -> sqlRegistry.findSql("unknown"));
+    }
+
+    @Test
+    public void registeredSqlOverridesIndex() {
+        load();
+
+        sqlRegistry.registerSql("userGet", "select id from users where id = ?");
+
+        assertThat(sqlRegistry.findSql("userGet"), is("select id from users where id = ?"));
+    }
+
+    @Test
+    public void readIntoAnotherRegistry() {
+        CollectingSqlRegistry collected = new CollectingSqlRegistry();
+        sqlRegistry.read(collected);
+
+        assertThat(collected.getSqlmap().size(), is(9));
+        assertThat(collected.getSqlmap().get("userGet"), is("select * from users where id = ?"));
+    }
+
+    @Test
+    public void fallBackWhenMissing() {
+        compiled.delete();
+
+        load();
+
+        assertThat(sqlRegistry.getIndexedCount(), is(0));
+        assertThat(sqlRegistry.getDecodedCount(), is(9));
+        assertThat(sqlRegistry.findSql("userGet"), is("select * from users where id = ?"));
+    }
+
+    private void load() {
+        BaseSqlService sqlService = new BaseSqlService();
+        sqlService.setSqlReader(sqlRegistry);
+        sqlService.setSqlRegistry(sqlRegistry);
+        sqlService.loadSql();
+    }
+}